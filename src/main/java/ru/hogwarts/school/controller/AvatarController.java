@@ -1,76 +1,254 @@
 package ru.hogwarts.school.controller;
 
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
-import ru.hogwarts.school.entities.Avatar;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.dto.AvatarFile;
+import ru.hogwarts.school.dto.AvatarImportReport;
+import ru.hogwarts.school.dto.AvatarInfoSlice;
+import ru.hogwarts.school.dto.AvatarPreviewData;
+import ru.hogwarts.school.dto.CacheStats;
+import ru.hogwarts.school.service.AvatarImportService;
+import ru.hogwarts.school.service.AvatarRenditionCache;
 import ru.hogwarts.school.service.AvatarService;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/avatar")
 public class AvatarController {
     private static final Logger logger = LoggerFactory.getLogger(AvatarController.class);
+
+    // Атрибуты Tomcat для отправки файла через sendfile в обход servlet-потока
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+    private static final String PREVIEW_STATUS_HEADER = "X-Preview-Status";
+
     private final AvatarService avatarService;
+    private final AvatarImportService avatarImportService;
 
-    public AvatarController(AvatarService avatarService) {
+    public AvatarController(AvatarService avatarService, AvatarImportService avatarImportService) {
         this.avatarService = avatarService;
+        this.avatarImportService = avatarImportService;
     }
 
     @PostMapping(value = "/{id}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @QueryBudget(5)
     public String uploadAvatar(@PathVariable Long id, @RequestParam MultipartFile avatar) throws IOException {
         logger.info("Запрос загрузки аватара для студента ID: {}", id);
         avatarService.uploadAvatar(id, avatar);
         return "Avatar uploaded";
     }
 
+    /**
+     * Пакетный импорт аватаров из ZIP-архива. Имя файла в архиве — ID или имя студента.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public AvatarImportReport importAvatars(@RequestParam MultipartFile archive) throws IOException {
+        logger.info("Запрос пакетного импорта аватаров, размер архива: {}", archive.getSize());
+        try (InputStream is = archive.getInputStream()) {
+            return avatarImportService.importArchive(is);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Отдает превью аватара. Пока превью генерируется, возвращается 202 с Retry-After,
+     * если сгенерировать превью не удалось — 422. Состояние дублируется в X-Preview-Status.
+     */
     @GetMapping(value = "/{id}/avatar/preview")
+    @QueryBudget(1)
     public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id) {
         logger.info("Запрос превью аватара студента ID: {}", id);
-        Avatar avatar = avatarService.findAvatar(id);
+        AvatarPreviewData preview = avatarService.findPreview(id);
+        if (preview == null) {
+            return ResponseEntity.notFound().build();
+        }
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-        headers.setContentLength(avatar.getData().length);
+        headers.set(PREVIEW_STATUS_HEADER, preview.status().name());
+        switch (preview.status()) {
+            case PENDING -> {
+                headers.set(HttpHeaders.RETRY_AFTER, "1");
+                return ResponseEntity.accepted().headers(headers).build();
+            }
+            case FAILED -> {
+                return ResponseEntity.unprocessableEntity().headers(headers).build();
+            }
+            default -> {
+                headers.setContentType(MediaType.parseMediaType(preview.mediaType()));
+                headers.setContentLength(preview.data().length);
+                return ResponseEntity.ok().headers(headers).body(preview.data());
+            }
+        }
+    }
 
-        return ResponseEntity.ok().headers(headers).body(avatar.getData());
+    @GetMapping("/preview-cache/stats")
+    public CacheStats getPreviewCacheStats() {
+        logger.info("Запрос статистики кеша превью");
+        return avatarService.getPreviewCacheStats();
     }
 
+    /**
+     * Отдает превью заданной ширины из списка avatar.preview.widths.
+     * Превью создается при первом запросе и дальше берется из дискового кеша; файл
+     * читается целиком, чтобы вытеснение из кеша не мешало уже начатой отдаче.
+     */
+    @GetMapping(value = "/{id}/avatar/preview", params = "w")
+    @QueryBudget(1)
+    public ResponseEntity<Resource> downloadAvatarRendition(@PathVariable Long id,
+                                                            @RequestParam("w") int width,
+                                                            ServletWebRequest webRequest) throws IOException {
+        logger.info("Запрос превью шириной {} аватара студента ID: {}", width, id);
+        if (!avatarService.isSupportedPreviewWidth(width)) {
+            logger.warn("Запрошена неподдерживаемая ширина превью: {}", width);
+            return ResponseEntity.badRequest().build();
+        }
+        AvatarFile avatar = avatarService.findAvatarFile(id);
+        if (avatar.contentHash() == null || !Files.isReadable(Path.of(avatar.filePath()))) {
+            return ResponseEntity.notFound().build();
+        }
+
+        AvatarRenditionCache.Rendition rendition = avatarService.findRendition(avatar, width);
+        String eTag = "\"" + avatar.contentHash() + "-" + width + "\"";
+        if (webRequest.checkNotModified(eTag, rendition.lastModified())) {
+            logger.debug("Превью {} не изменилось, ответ 304", eTag);
+            return null;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.noCache());
+        headers.setContentType(MediaType.parseMediaType(avatar.mediaType()));
+        headers.setETag(eTag);
+        headers.setLastModified(rendition.lastModified());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        return ResponseEntity.ok().headers(headers).body(new ByteArrayResource(rendition.data()));
+    }
+
+    /**
+     * Отдает оригинал аватара. Условные запросы (If-None-Match / If-Modified-Since)
+     * завершаются ответом 304, запросы с Range — ответом 206 с нужным фрагментом.
+     * Полный файл под Tomcat отправляется через sendfile без копирования в heap.
+     */
     @GetMapping(value = "/{id}/avatar")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
+    @QueryBudget(1)
+    public ResponseEntity<Resource> downloadAvatar(@PathVariable Long id,
+                                                   ServletWebRequest webRequest) throws IOException {
         logger.info("Запрос полного аватара студента ID: {}", id);
-        Avatar avatar = avatarService.findAvatar(id);
-        Path path = Path.of(avatar.getFilePath());
+        AvatarFile avatar = avatarService.findAvatarFile(id);
+        if (avatar.filePath() == null || !Files.isReadable(Path.of(avatar.filePath()))) {
+            logger.warn("Файл аватара для студента ID {} не найден", id);
+            return ResponseEntity.notFound().build();
+        }
 
-        try (InputStream is = Files.newInputStream(path);
-             OutputStream os = response.getOutputStream()) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.noCache());
+        String contentUrl = avatarService.getContentUrl(avatar);
+        if (contentUrl != null) {
+            headers.set(HttpHeaders.CONTENT_LOCATION, contentUrl);
+        }
+        return serveFile(Path.of(avatar.filePath()), MediaType.parseMediaType(avatar.mediaType()),
+                avatar.contentHash(), headers, webRequest);
+    }
+
+    /**
+     * Отдает содержимое аватара по его хешу. Содержимое по такому URL никогда
+     * не меняется, поэтому клиенты и прокси могут кешировать его бессрочно.
+     */
+    @GetMapping(value = "/content/{hash}.{extension}")
+    @QueryBudget(1)
+    public ResponseEntity<Resource> downloadAvatarContent(@PathVariable String hash,
+                                                          @PathVariable String extension,
+                                                          ServletWebRequest webRequest) throws IOException {
+        logger.info("Запрос содержимого аватара: {}.{}", hash, extension);
+        Path path;
+        try {
+            path = avatarService.findContent(hash, extension);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Некорректный ключ содержимого аватара: {}.{}", hash, extension);
+            return ResponseEntity.notFound().build();
+        }
+        if (!Files.isReadable(path)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable());
+        MediaType mediaType = MediaTypeFactory.getMediaType(path.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return serveFile(path, mediaType, hash, headers, webRequest);
+    }
+
+    private ResponseEntity<Resource> serveFile(Path path, MediaType mediaType, String contentHash,
+                                               HttpHeaders headers, ServletWebRequest webRequest) throws IOException {
+        long length = Files.size(path);
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        String eTag = contentHash != null
+                ? "\"" + contentHash + "\""
+                : "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        if (webRequest.checkNotModified(eTag, lastModified)) {
+            logger.debug("Файл {} не изменился, ответ 304", path);
+            return null;
+        }
 
-            response.setStatus(200);
-            response.setContentType(avatar.getMediaType());
-            response.setContentLength(avatar.getData().length);
+        headers.setContentType(mediaType);
+        headers.setETag(eTag);
+        headers.setLastModified(lastModified);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
 
-            is.transferTo(os);
+        HttpServletRequest request = webRequest.getRequest();
+        HttpServletResponse response = webRequest.getResponse();
+        if (canUseSendfile(request, response)) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, 0L);
+            request.setAttribute(SENDFILE_END_ATTR, length);
+            headers.setContentLength(length);
+            logger.debug("Файл {} отправляется через sendfile ({} байт)", path, length);
+            return ResponseEntity.ok().headers(headers).build();
         }
+
+        // Range-запросы и контейнеры без sendfile обслуживает Spring MVC через ResourceRegion
+        return ResponseEntity.ok().headers(headers).body(new FileSystemResource(path));
+    }
+
+    private boolean canUseSendfile(HttpServletRequest request, HttpServletResponse response) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))
+                && HttpMethod.GET.matches(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && !(response instanceof ServletResponseWrapper);
     }
 
     @GetMapping
-    public Page<Avatar> getAllAvatars(
-            @RequestParam(defaultValue = "0") int page,
+    @QueryBudget(1)
+    public AvatarInfoSlice getAllAvatars(
+            @RequestParam(required = false) Long after,
             @RequestParam(defaultValue = "10") int size) {
 
-        logger.info("Запрос всех аватаров. Страница: {}, Размер: {}", page, size);
-        return avatarService.getAllAvatars(page, size);
+        logger.info("Запрос всех аватаров. После ID: {}, Размер: {}", after, size);
+        return avatarService.getAllAvatars(after, size);
     }
 }
-
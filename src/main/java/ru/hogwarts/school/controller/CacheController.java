@@ -0,0 +1,31 @@
+package ru.hogwarts.school.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.dto.CacheStats;
+import ru.hogwarts.school.service.EntityCaches;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+    private static final Logger logger = LoggerFactory.getLogger(CacheController.class);
+    private final EntityCaches entityCaches;
+
+    public CacheController(EntityCaches entityCaches) {
+        this.entityCaches = entityCaches;
+    }
+
+    /**
+     * Статистика кеша студентов: попадания, промахи, вытеснения, размер.
+     */
+    @GetMapping("/stats")
+    public Map<String, CacheStats> getCacheStats() {
+        logger.info("Запрос статистики кешей сущностей");
+        return entityCaches.stats();
+    }
+}
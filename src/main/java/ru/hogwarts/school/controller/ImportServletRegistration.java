@@ -0,0 +1,42 @@
+package ru.hogwarts.school.controller;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcProperties;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * Отдельный DispatcherServlet для эндпоинтов пакетного импорта со своим лимитом multipart.
+ * Лимит основного сервлета рассчитан на один аватар, и Tomcat отклоняет большие тела
+ * до записи на диск; большой лимит нужен только архивам и CSV импорта.
+ * Обработчики и фильтры общие с основным сервлетом, настройки spring.mvc.* переносятся
+ * так же, как в DispatcherServletAutoConfiguration.
+ */
+@Component
+public class ImportServletRegistration extends ServletRegistrationBean<DispatcherServlet> {
+
+    public ImportServletRegistration(WebApplicationContext applicationContext,
+                                     WebMvcProperties webMvcProperties,
+                                     @Value("${avatar.import.max-archive-size:2GB}") DataSize maxSize,
+                                     @Value("${spring.servlet.multipart.file-size-threshold:1MB}") DataSize threshold) {
+        super(dispatcherServlet(applicationContext, webMvcProperties), "/avatar/import", "/student/import");
+        setName("importDispatcherServlet");
+        setLoadOnStartup(webMvcProperties.getServlet().getLoadOnStartup());
+        setMultipartConfig(new MultipartConfigElement(null, maxSize.toBytes(), maxSize.toBytes(),
+                Math.toIntExact(threshold.toBytes())));
+    }
+
+    private static DispatcherServlet dispatcherServlet(WebApplicationContext applicationContext,
+                                                       WebMvcProperties webMvcProperties) {
+        DispatcherServlet dispatcherServlet = new DispatcherServlet(applicationContext);
+        dispatcherServlet.setDispatchOptionsRequest(webMvcProperties.isDispatchOptionsRequest());
+        dispatcherServlet.setDispatchTraceRequest(webMvcProperties.isDispatchTraceRequest());
+        dispatcherServlet.setPublishEvents(webMvcProperties.isPublishRequestHandledEvents());
+        dispatcherServlet.setEnableLoggingRequestDetails(webMvcProperties.isLogRequestDetails());
+        return dispatcherServlet;
+    }
+}
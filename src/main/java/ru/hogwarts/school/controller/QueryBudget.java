@@ -0,0 +1,17 @@
+package ru.hogwarts.school.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Максимальное число команд SQL, которое обработчик может выполнить за один запрос.
+ * Превышение пишется в лог и метрику sql.request.budget.exceeded, а при
+ * {@code sql.profiler.fail-on-budget-exceeded=true} (в тестах) запрос завершается ошибкой 500.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+    int value();
+}
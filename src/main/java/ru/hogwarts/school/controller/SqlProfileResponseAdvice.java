@@ -0,0 +1,47 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import ru.hogwarts.school.service.SqlProfile;
+
+/**
+ * Ставит заголовки профиля SQL и проверяет бюджет до записи тела ответа:
+ * после начала отправки тела заголовки изменить уже нельзя.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(name = "sql.profiler.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlProfileResponseAdvice implements ResponseBodyAdvice<Object> {
+    private final SqlProfilingFilter sqlProfilingFilter;
+
+    public SqlProfileResponseAdvice(SqlProfilingFilter sqlProfilingFilter) {
+        this.sqlProfilingFilter = sqlProfilingFilter;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        SqlProfile profile = SqlProfile.current();
+        // Заголовки ставятся прямо в ответ сервлета: у обработчиков void тело не пишется,
+        // и заголовки ServerHttpResponse в ответ бы не попали
+        if (profile != null && request instanceof ServletServerHttpRequest servletRequest
+                && response instanceof ServletServerHttpResponse servletResponse) {
+            sqlProfilingFilter.report(servletRequest.getServletRequest(), profile, returnType.getMethod(),
+                    servletResponse.getServletResponse()::setHeader);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,158 @@
+package ru.hogwarts.school.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.hogwarts.school.service.SqlProfile;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Профилирование SQL по HTTP-запросам: на время запроса открывает {@link SqlProfile},
+ * отдает число команд и время JDBC в заголовках {@value #COUNT_HEADER} и
+ * {@value #TIME_HEADER}, пишет метрики Micrometer по шаблону URI, ищет повторы
+ * одной команды (N+1) и проверяет бюджет {@link QueryBudget} обработчика.
+ * Заголовки ставит {@link SqlProfileResponseAdvice} до записи тела; для ответов без
+ * тела это делает фильтр, пока ответ еще не отправлен.
+ */
+@Component
+@ConditionalOnProperty(name = "sql.profiler.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlProfilingFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(SqlProfilingFilter.class);
+    static final String COUNT_HEADER = "X-SQL-Count";
+    static final String TIME_HEADER = "X-SQL-Time-Ms";
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    @Value("${sql.profiler.fail-on-budget-exceeded:false}")
+    private boolean failOnBudgetExceeded;
+
+    // Бюджет обработчиков без @QueryBudget; отрицательное значение — без ограничения
+    @Value("${sql.profiler.default-budget:-1}")
+    private int defaultBudget;
+
+    @Value("${sql.profiler.n-plus-one-threshold:10}")
+    private int nPlusOneThreshold;
+
+    public SqlProfilingFilter(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlProfile profile = SqlProfile.start();
+        try {
+            chain.doFilter(request, response);
+            if (!response.isCommitted()) {
+                try {
+                    report(request, profile, handlerMethod(request), response::setHeader);
+                } catch (ResponseStatusException e) {
+                    response.sendError(e.getStatusCode().value(), e.getReason());
+                }
+            }
+        } finally {
+            SqlProfile.stop();
+            record(request, profile);
+        }
+    }
+
+    /**
+     * Ставит заголовки и проверяет бюджет обработчика; выполняется один раз за запрос.
+     * В тестовом режиме превышение бюджета прерывает ответ ошибкой 500.
+     */
+    void report(HttpServletRequest request, SqlProfile profile, Method handler, BiConsumer<String, String> headers) {
+        if (!profile.markReported()) {
+            return;
+        }
+        headers.accept(COUNT_HEADER, String.valueOf(profile.statements()));
+        headers.accept(TIME_HEADER, String.format(Locale.ROOT, "%.3f", profile.jdbcNanos() / 1_000_000.0));
+
+        QueryBudget annotation = handler == null ? null : handler.getAnnotation(QueryBudget.class);
+        int budget = annotation != null ? annotation.value() : defaultBudget;
+        if (budget < 0 || profile.statements() <= budget) {
+            return;
+        }
+        String message = String.format("%s %s: выполнено %d команд SQL при бюджете %d",
+                request.getMethod(), uri(request), profile.statements(), budget);
+        meterRegistry.ifAvailable(registry -> Counter.builder("sql.request.budget.exceeded")
+                .description("Запросы, превысившие бюджет команд SQL")
+                .tags(tags(request))
+                .register(registry)
+                .increment());
+        if (failOnBudgetExceeded) {
+            logger.error("Превышен бюджет SQL: {}", message);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Query budget exceeded: " + message);
+        }
+        logger.warn("Превышен бюджет SQL: {}", message);
+    }
+
+    private void record(HttpServletRequest request, SqlProfile profile) {
+        Tags tags = tags(request);
+        meterRegistry.ifAvailable(registry -> {
+            DistributionSummary.builder("sql.request.statements")
+                    .description("Число команд SQL на HTTP-запрос")
+                    .tags(tags)
+                    .register(registry)
+                    .record(profile.statements());
+            Timer.builder("sql.request.time")
+                    .description("Суммарное время JDBC на HTTP-запрос")
+                    .tags(tags)
+                    .register(registry)
+                    .record(profile.jdbcNanos(), TimeUnit.NANOSECONDS);
+        });
+
+        Map.Entry<String, Integer> repeated = profile.mostRepeated().orElse(null);
+        if (repeated != null && repeated.getValue() >= nPlusOneThreshold) {
+            logger.warn("Возможная проблема N+1 в {} {}: команда выполнена {} раз: {}",
+                    request.getMethod(), uri(request), repeated.getValue(), repeated.getKey());
+            meterRegistry.ifAvailable(registry -> Counter.builder("sql.request.n-plus-one")
+                    .description("Запросы с многократным повтором одной команды SQL")
+                    .tags(tags)
+                    .register(registry)
+                    .increment());
+        } else if (profile.statements() > 0) {
+            logger.debug("{} {}: {} команд SQL за {} мкс", request.getMethod(), uri(request),
+                    profile.statements(), profile.jdbcNanos() / 1000);
+        }
+    }
+
+    private static Tags tags(HttpServletRequest request) {
+        return Tags.of("method", request.getMethod(), "uri", uri(request));
+    }
+
+    // Шаблон пути вместо фактического URI, чтобы ID не размножали серии метрик
+    private static String uri(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? UNKNOWN_URI : pattern.toString();
+    }
+
+    private static Method handlerMethod(HttpServletRequest request) {
+        return request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handler
+                ? handler.getMethod()
+                : null;
+    }
+}
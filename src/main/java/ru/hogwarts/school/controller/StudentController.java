@@ -2,12 +2,28 @@ package ru.hogwarts.school.controller;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
-import ru.hogwarts.school.entities.Faculty;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentAgeStatistics;
+import ru.hogwarts.school.dto.StudentBulkItem;
+import ru.hogwarts.school.dto.StudentBulkReport;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.dto.StudentImportReport;
+import ru.hogwarts.school.dto.StudentSearchHit;
+import ru.hogwarts.school.dto.StudentSlice;
 import ru.hogwarts.school.entities.Student;
+import ru.hogwarts.school.service.StudentBulkService;
+import ru.hogwarts.school.service.StudentImportService;
+import ru.hogwarts.school.service.StudentSearchService;
 import ru.hogwarts.school.service.StudentService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -15,50 +31,113 @@ import java.util.List;
 public class StudentController {
     private static final Logger logger = LoggerFactory.getLogger(StudentController.class);
     private final StudentService studentService;
-
-    public StudentController(StudentService studentService) {
+    private final StudentBulkService studentBulkService;
+    private final StudentImportService studentImportService;
+    private final StudentSearchService studentSearchService;
+
+    public StudentController(StudentService studentService,
+                             StudentBulkService studentBulkService,
+                             StudentImportService studentImportService,
+                             StudentSearchService studentSearchService) {
         this.studentService = studentService;
+        this.studentBulkService = studentBulkService;
+        this.studentImportService = studentImportService;
+        this.studentSearchService = studentSearchService;
+    }
+
+    /**
+     * Лента студентов с keyset-пагинацией. Для перехода между страницами передается
+     * nextCursor или previousCursor из предыдущего ответа.
+     */
+    @GetMapping
+    @QueryBudget(1)
+    public StudentSlice getStudents(@RequestParam(required = false) String cursor,
+                                    @RequestParam(required = false) Integer size,
+                                    @RequestParam(defaultValue = "asc") String order) {
+        logger.info("Запрос ленты студентов. Размер: {}, порядок: {}", size, order);
+        Sort.Direction direction = Sort.Direction.fromOptionalString(order)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Order must be asc or desc"));
+        return studentService.getStudents(cursor, size, direction);
+    }
+
+    /**
+     * Подсказки по имени: совпадения по префиксу без учета регистра, затем похожие имена
+     * с опечатками, лучшие первыми.
+     */
+    @GetMapping("/search")
+    @QueryBudget(1)
+    public List<StudentSearchHit> searchStudents(@RequestParam String q,
+                                                 @RequestParam(required = false) Integer limit) {
+        logger.info("Поиск студентов по имени: '{}'", q);
+        return studentSearchService.search(q, limit);
     }
 
     @GetMapping("/{id}")
-    public Student getStudent(@PathVariable Long id) {
+    @QueryBudget(1)
+    public StudentDto getStudent(@PathVariable Long id) {
         logger.info("Запрос студента по ID: {}", id);
         return studentService.getStudent(id);
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Student addStudent(@RequestBody Student student) {
+    @QueryBudget(2)
+    public StudentDto addStudent(@RequestBody Student student) {
         logger.info("Запрос на создание студента: {}", student);
         return studentService.addStudent(student);
     }
 
+    /**
+     * Пакетное создание/обновление студентов по имени; результат возвращается для каждой строки.
+     */
+    @PostMapping("/bulk")
+    public StudentBulkReport upsertStudents(@RequestBody List<StudentBulkItem> students) {
+        logger.info("Запрос на пакетную запись студентов: {} строк", students.size());
+        return studentBulkService.upsertStudents(students);
+    }
+
+    /**
+     * Импорт студентов и факультетов из CSV (name,age,faculty_name,faculty_color) через COPY.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public StudentImportReport importStudents(@RequestParam MultipartFile file) throws IOException {
+        logger.info("Запрос CSV-импорта студентов, размер файла: {}", file.getSize());
+        try (InputStream is = file.getInputStream()) {
+            return studentImportService.importCsv(is);
+        }
+    }
+
     @PutMapping("/{id}")
-    public Student updateStudent(@PathVariable Long id, @RequestBody Student student) {
+    @QueryBudget(3)
+    public StudentDto updateStudent(@PathVariable Long id, @RequestBody Student student) {
         logger.info("Запрос на обновление студента ID: {}", id);
         return studentService.updateStudent(id, student);
     }
 
     @DeleteMapping("/{id}")
+    @QueryBudget(2)
     public void removeStudent(@PathVariable Long id) {
         logger.info("Запрос на удаление студента ID: {}", id);
         studentService.removeStudent(id);
     }
 
     @GetMapping("/{id}/faculty")
-    public Faculty getStudentFaculty(@PathVariable Long id) {
+    @QueryBudget(1)
+    public FacultyDto getStudentFaculty(@PathVariable Long id) {
         logger.info("Запрос факультета студента ID: {}", id);
         return studentService.getStudentFaculty(id);
     }
 
     @GetMapping("/by-age")
-    public List<Student> findStudentsByAge(@RequestParam int age) {
+    @QueryBudget(1)
+    public List<StudentDto> findStudentsByAge(@RequestParam int age) {
         logger.info("Запрос студентов возраста: {}", age);
         return studentService.findStudentsByAge(age);
     }
 
     @GetMapping("/by-age-between")
-    public List<Student> findStudentsByAgeBetween(
+    @QueryBudget(1)
+    public List<StudentDto> findStudentsByAgeBetween(
             @RequestParam int minAge,
             @RequestParam int maxAge) {
         logger.info("Запрос студентов в диапазоне: {} - {}", minAge, maxAge);
@@ -66,31 +145,43 @@ public class StudentController {
     }
 
     @GetMapping("/count")
+    @QueryBudget(1)
     public int getTotalCount() {
         logger.info("Запрос общего количества студентов");
         return studentService.getTotalCountOfStudents();
     }
 
     @GetMapping("/average-age")
+    @QueryBudget(1)
     public double getAverageAge() {
         logger.info("Запрос среднего возраста студентов");
         return studentService.getAverageAge();
     }
 
+    @GetMapping("/age-histogram")
+    @QueryBudget(1)
+    public StudentAgeStatistics getAgeHistogram() {
+        logger.info("Запрос распределения студентов по возрастам");
+        return studentService.getAgeStatistics();
+    }
+
     @GetMapping("/last-five")
-    public List<Student> getLastFiveStudents() {
+    @QueryBudget(1)
+    public List<StudentDto> getLastFiveStudents() {
         logger.info("Запрос последних 5 студентов");
         return studentService.findLastFiveStudents();
     }
 
     // Новые методы для задания 4.5
     @GetMapping("/names-starting-with-a")
+    @QueryBudget(1)
     public List<String> getNamesStartingWithA() {
         logger.info("Запрос имен студентов, начинающихся на 'A'");
         return studentService.getStudentNamesStartingWithA();
     }
 
     @GetMapping("/average-age-with-find-all")
+    @QueryBudget(1)
     public double getAverageAgeWithFindAll() {
         logger.info("Запрос среднего возраста студентов (через findAll)");
         return studentService.getAverageAgeWithFindAll();
@@ -105,14 +196,14 @@ public class StudentController {
     @GetMapping("/print-parallel")
     public void printStudentsParallel() {
         logger.info("Запрос параллельного вывода имен студентов");
-        List<Student> students = studentService.getFirstSixStudents();
+        List<StudentDto> students = studentService.getFirstSixStudents();
         studentService.printStudentsParallel(students);
     }
 
     @GetMapping("/print-synchronized")
     public void printStudentsSynchronized() {
         logger.info("Запрос синхронизированного вывода имен студентов");
-        List<Student> students = studentService.getFirstSixStudents();
+        List<StudentDto> students = studentService.getFirstSixStudents();
         studentService.printStudentsSynchronized(students);
     }
 }
\ No newline at end of file
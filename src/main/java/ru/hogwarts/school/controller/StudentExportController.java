@@ -0,0 +1,49 @@
+package ru.hogwarts.school.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.service.StudentExportService;
+
+/**
+ * Полная выгрузка студентов для синхронизации с внешними системами.
+ * Ответ пишется потоково по мере чтения строк из БД.
+ */
+@RestController
+@RequestMapping("/student/export")
+public class StudentExportController {
+    private static final Logger logger = LoggerFactory.getLogger(StudentExportController.class);
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+
+    private final StudentExportService studentExportService;
+
+    public StudentExportController(StudentExportService studentExportService) {
+        this.studentExportService = studentExportService;
+    }
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> exportStudents(@RequestParam(defaultValue = "ndjson") String format) {
+        logger.info("Запрос выгрузки студентов в формате {}", format);
+        StudentExportService.Format exportFormat;
+        try {
+            exportFormat = StudentExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Format must be ndjson or csv");
+        }
+        String fileName = "students." + exportFormat.name().toLowerCase();
+        return ResponseEntity.ok()
+                .contentType(exportFormat == StudentExportService.Format.CSV ? CSV : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(out -> studentExportService.export(exportFormat, out));
+    }
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Число студентов заданного возраста
+ */
+public record AgeCount(int age, long count) {
+}
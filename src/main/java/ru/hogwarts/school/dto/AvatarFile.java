@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Файл аватара для отдачи клиенту — только путь, тип и хеш, без графа студента
+ */
+public record AvatarFile(String filePath, String mediaType, String contentHash) {
+}
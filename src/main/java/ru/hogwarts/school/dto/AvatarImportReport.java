@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Отчет о пакетном импорте аватаров
+ */
+public record AvatarImportReport(int total, int imported, int failed, long durationMs,
+                                 List<AvatarImportResult> entries) {
+}
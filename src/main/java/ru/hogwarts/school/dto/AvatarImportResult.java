@@ -0,0 +1,15 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Результат импорта одного элемента ZIP-архива с аватарами
+ */
+public record AvatarImportResult(String entry, Long studentId, Status status, String message) {
+
+    public enum Status {
+        IMPORTED,
+        PREVIEW_FAILED,
+        SKIPPED,
+        STUDENT_NOT_FOUND,
+        REJECTED
+    }
+}
@@ -0,0 +1,12 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Метаданные аватара для списков — без байтов превью и без графа студента
+ */
+public record AvatarInfo(Long id, Long studentId, long fileSize, String mediaType, String previewUrl) {
+
+    // Используется в JPQL-проекции: URL превью вычисляется из ID студента
+    public AvatarInfo(Long id, Long studentId, long fileSize, String mediaType) {
+        this(id, studentId, fileSize, mediaType, "/avatar/" + studentId + "/avatar/preview");
+    }
+}
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Страница списка аватаров при keyset-пагинации: nextCursor передается в after
+ */
+public record AvatarInfoSlice(List<AvatarInfo> content, Long nextCursor, boolean hasNext) {
+}
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.entities.PreviewStatus;
+
+/**
+ * Превью аватара без метаданных студента
+ */
+public record AvatarPreviewData(String mediaType, byte[] data, PreviewStatus status) {
+}
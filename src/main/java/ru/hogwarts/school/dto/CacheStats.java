@@ -0,0 +1,14 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Статистика in-memory кеша
+ */
+public record CacheStats(long hitCount,
+                         long missCount,
+                         double hitRate,
+                         long evictionCount,
+                         long evictionWeight,
+                         long estimatedSize,
+                         long weightedSize,
+                         long maximumWeight) {
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.entities.Faculty;
+
+/**
+ * Факультет в ответах API — без списка студентов
+ */
+public record FacultyDto(Long id, String name, String color) {
+
+    public static FacultyDto from(Faculty faculty) {
+        return new FacultyDto(faculty.getId(), faculty.getName(), faculty.getColor());
+    }
+}
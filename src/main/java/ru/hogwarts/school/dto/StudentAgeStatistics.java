@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+import java.util.SortedMap;
+
+/**
+ * Сводка по возрастам студентов: количество, средний, минимальный и максимальный
+ * возраст и распределение по возрастам (возраст -> число студентов)
+ */
+public record StudentAgeStatistics(long count, double averageAge, Integer minAge, Integer maxAge,
+                                   SortedMap<Integer, Long> histogram) {
+}
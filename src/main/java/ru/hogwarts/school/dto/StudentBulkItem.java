@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Строка пакетного создания/обновления студентов; студент определяется по имени
+ */
+public record StudentBulkItem(String name, Integer age, Long facultyId) {
+}
@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Отчет о пакетном создании/обновлении студентов
+ */
+public record StudentBulkReport(int total, int created, int updated, int rejected, long durationMs,
+                                List<StudentBulkResult> results) {
+}
@@ -0,0 +1,14 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Результат обработки одной строки пакетного запроса; index — позиция строки в запросе
+ */
+public record StudentBulkResult(int index, String name, Long id, Status status, String message) {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        SKIPPED,
+        REJECTED
+    }
+}
@@ -0,0 +1,19 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.entities.Student;
+
+/**
+ * Студент в ответах API: факультет вложен только id, названием и цветом
+ */
+public record StudentDto(Long id, String name, int age, FacultyDto faculty) {
+
+    // Используется в JPQL-проекции с LEFT JOIN факультета: без факультета все его поля null
+    public StudentDto(Long id, String name, int age, Long facultyId, String facultyName, String facultyColor) {
+        this(id, name, age, facultyId == null ? null : new FacultyDto(facultyId, facultyName, facultyColor));
+    }
+
+    public static StudentDto from(Student student) {
+        return new StudentDto(student.getId(), student.getName(), student.getAge(),
+                student.getFaculty() == null ? null : FacultyDto.from(student.getFaculty()));
+    }
+}
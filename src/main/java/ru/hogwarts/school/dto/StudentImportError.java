@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Отклоненная строка CSV-импорта; row — номер строки данных, начиная с 1 (без заголовка)
+ */
+public record StudentImportError(long row, String name, String message) {
+}
@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Отчет о CSV-импорте студентов; список errors ограничен настройкой student.import.max-reported-errors
+ */
+public record StudentImportReport(long total, long created, long updated, long rejected, long facultiesCreated,
+                                  long durationMs, List<StudentImportError> errors) {
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Найденный по имени студент. score равен 1 для совпадения по префиксу,
+ * для нечетких совпадений — триграммное сходство имени с запросом (0..1).
+ */
+public record StudentSearchHit(Long id, String name, int age, double score) {
+}
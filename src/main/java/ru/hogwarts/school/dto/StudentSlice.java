@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Страница ленты студентов при keyset-пагинации. Курсоры непрозрачны и передаются
+ * в параметр cursor; null означает, что в этом направлении страниц больше нет
+ */
+public record StudentSlice(List<StudentDto> content, String nextCursor, String previousCursor) {
+}
@@ -1,13 +1,13 @@
 package ru.hogwarts.school.entities;
 
 import jakarta.persistence.*;
-import org.hibernate.annotations.JdbcTypeCode;
-import org.hibernate.type.SqlTypes;
 
-import java.util.Arrays;
 import java.util.Objects;
 
 
+/**
+ * Метаданные аватара. Байты превью хранятся отдельно в {@link AvatarPreview}.
+ */
 @Entity
 public class Avatar {
 
@@ -18,22 +18,27 @@ public class Avatar {
     private long fileSize;
     private String mediaType;
 
-    @Lob
-    @JdbcTypeCode(SqlTypes.BINARY)
-    private byte[] data;
+    @Column(length = 64)
+    private String contentHash;
+    private Integer width;
+    private Integer height;
 
-    @OneToOne
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private PreviewStatus previewStatus = PreviewStatus.PENDING;
+
+    // Сервисы аватаров обращаются только к student.id; студент с факультетом не подгружается
+    @OneToOne(fetch = FetchType.LAZY)
     private Student student;
 
     public Avatar() {
     }
 
-    public Avatar(Long id, String filePath, long fileSize, String mediaType, byte[] data, Student student) {
+    public Avatar(Long id, String filePath, long fileSize, String mediaType, Student student) {
         this.id = id;
         this.filePath = filePath;
         this.fileSize = fileSize;
         this.mediaType = mediaType;
-        this.data = data;
         this.student = student;
     }
 
@@ -69,12 +74,36 @@ public class Avatar {
         this.mediaType = mediaType;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Integer getWidth() {
+        return width;
+    }
+
+    public void setWidth(Integer width) {
+        this.width = width;
+    }
+
+    public Integer getHeight() {
+        return height;
+    }
+
+    public void setHeight(Integer height) {
+        this.height = height;
+    }
+
+    public PreviewStatus getPreviewStatus() {
+        return previewStatus;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setPreviewStatus(PreviewStatus previewStatus) {
+        this.previewStatus = previewStatus;
     }
 
     public Student getStudent() {
@@ -92,7 +121,10 @@ public class Avatar {
                 ", filePath='" + filePath + '\'' +
                 ", fileSize=" + fileSize +
                 ", mediaType='" + mediaType + '\'' +
-                ", data=" + Arrays.toString(data) +
+                ", contentHash='" + contentHash + '\'' +
+                ", width=" + width +
+                ", height=" + height +
+                ", previewStatus=" + previewStatus +
                 ", student=" + student +
                 '}';
     }
@@ -0,0 +1,69 @@
+package ru.hogwarts.school.entities;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.util.Objects;
+
+/**
+ * Байты превью аватара. Хранятся в отдельной таблице, чтобы запросы
+ * к метаданным {@link Avatar} не читали изображения; загружаются только по запросу.
+ */
+@Entity
+@Table(name = "avatar_preview")
+public class AvatarPreview {
+
+    @Id
+    @Column(name = "avatar_id")
+    private Long avatarId;
+
+    @Lob
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(nullable = false)
+    private byte[] data;
+
+    public AvatarPreview() {
+    }
+
+    public AvatarPreview(Long avatarId, byte[] data) {
+        this.avatarId = avatarId;
+        this.data = data;
+    }
+
+    public Long getAvatarId() {
+        return avatarId;
+    }
+
+    public void setAvatarId(Long avatarId) {
+        this.avatarId = avatarId;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarPreview{" +
+                "avatarId=" + avatarId +
+                ", size=" + (data == null ? 0 : data.length) +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || getClass() != o.getClass()) return false;
+        AvatarPreview that = (AvatarPreview) o;
+        return Objects.equals(avatarId, that.avatarId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(avatarId);
+    }
+}
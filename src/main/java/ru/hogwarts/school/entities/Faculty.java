@@ -1,6 +1,8 @@
 package ru.hogwarts.school.entities;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Generated;
+import org.hibernate.generator.EventType;
 
 import java.util.List;
 import java.util.Objects;
@@ -11,7 +13,9 @@ import java.util.Objects;
 @Entity
 public class Faculty {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Идентификаторы выдаются блоками по 50 (pooled-lo), что позволяет пакетные INSERT
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "faculty_seq")
+    @SequenceGenerator(name = "faculty_seq", sequenceName = "faculty_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -20,6 +24,11 @@ public class Faculty {
     @Column(nullable = false)
     private String color;
 
+    // Версия строки из базы, как у Student
+    @Generated(event = {EventType.INSERT, EventType.UPDATE})
+    @Column(insertable = false, updatable = false)
+    private long version;
+
     @OneToMany(mappedBy = "faculty")
     private List<Student> students;
 
@@ -58,13 +67,13 @@ public class Faculty {
         this.students = students;
     }
 
+    // Ленивый список студентов не выводится: иначе логирование факультета загружало бы его из базы
     @Override
     public String toString() {
         return "Faculty{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", color='" + color + '\'' +
-                ", students=" + students +
                 '}';
     }
 
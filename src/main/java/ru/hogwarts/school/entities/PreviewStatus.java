@@ -0,0 +1,10 @@
+package ru.hogwarts.school.entities;
+
+/**
+ * Состояние генерации превью аватара
+ */
+public enum PreviewStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -2,6 +2,8 @@ package ru.hogwarts.school.entities;
 
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Generated;
+import org.hibernate.generator.EventType;
 
 import java.util.Objects;
 
@@ -9,7 +11,9 @@ import java.util.Objects;
 @Table(name = "student")
 public class Student {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Идентификаторы выдаются блоками по 50 (pooled-lo), что позволяет пакетные INSERT
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+    @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -22,6 +26,12 @@ public class Student {
     @JoinColumn(name = "faculty_id")
     private Faculty faculty;
 
+    // Версия строки выставляет база (row_version_seq и триггер); Hibernate перечитывает ее после записи.
+    // Попадает в события изменений, чтобы подписчики отбрасывали устаревшие
+    @Generated(event = {EventType.INSERT, EventType.UPDATE})
+    @Column(insertable = false, updatable = false)
+    private long version;
+
 
     public Student() {
     }
@@ -0,0 +1,28 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.entities.AvatarPreview;
+
+/**
+ * Запись превью без предварительного чтения: старые байты не загружаются в контекст персистентности.
+ */
+public interface AvatarPreviewRepository extends JpaRepository<AvatarPreview, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO avatar_preview (avatar_id, data) VALUES (:avatarId, :data) " +
+            "ON CONFLICT (avatar_id) DO UPDATE SET data = EXCLUDED.data", nativeQuery = true)
+    int upsert(Long avatarId, byte[] data);
+
+    // Копирование готового превью того же содержимого на стороне БД
+    @Modifying
+    @Query(value = "INSERT INTO avatar_preview (avatar_id, data) " +
+            "SELECT :targetId, data FROM avatar_preview WHERE avatar_id = :sourceId " +
+            "ON CONFLICT (avatar_id) DO UPDATE SET data = EXCLUDED.data", nativeQuery = true)
+    int copy(Long sourceId, Long targetId);
+
+    @Modifying
+    @Query("DELETE FROM AvatarPreview p WHERE p.avatarId = :avatarId")
+    int deleteByAvatarId(Long avatarId);
+}
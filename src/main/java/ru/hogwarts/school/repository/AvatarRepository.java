@@ -1,13 +1,48 @@
 package ru.hogwarts.school.repository;
 
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.dto.AvatarFile;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.AvatarPreviewData;
 import ru.hogwarts.school.entities.Avatar;
+import ru.hogwarts.school.entities.PreviewStatus;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
     Optional<Avatar> findByStudentId(Long id);
-    Page<Avatar> findAll(Pageable pageable); // Исправленный импорт Page
-}
\ No newline at end of file
+
+    // Для отдачи файла хватает пути, типа и хеша; студент и факультет не загружаются
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarFile(a.filePath, a.mediaType, a.contentHash) " +
+            "FROM Avatar a WHERE a.student.id = :studentId")
+    Optional<AvatarFile> findFileByStudentId(Long studentId);
+    long countByContentHash(String contentHash);
+
+    // Блокировка шарда содержимого до конца транзакции: публикация и удаление файла с одним хешем не пересекаются
+    @Query(value = "SELECT count(*) FROM (SELECT pg_advisory_xact_lock(:shard)) l", nativeQuery = true)
+    long lockContentShard(int shard);
+
+    Optional<Avatar> findFirstByContentHashAndPreviewStatus(String contentHash, PreviewStatus previewStatus);
+    List<Avatar> findAllByPreviewStatus(PreviewStatus previewStatus);
+
+    // Только метаданные, без колонки data и без COUNT(*): размер ответа не зависит от изображений
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarInfo(a.id, a.student.id, a.fileSize, a.mediaType) " +
+            "FROM Avatar a WHERE a.id > :afterId ORDER BY a.id")
+    Slice<AvatarInfo> findInfosAfter(long afterId, Pageable pageable);
+
+    // Превью читается одним запросом по student_id; байты подтягиваются только здесь
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarPreviewData(a.mediaType, p.data, a.previewStatus) " +
+            "FROM Avatar a LEFT JOIN AvatarPreview p ON p.avatarId = a.id WHERE a.student.id = :studentId")
+    Optional<AvatarPreviewData> findPreviewByStudentId(Long studentId);
+
+    // Статус превью обновляется только если аватар не был перезаписан новой загрузкой
+    @Modifying
+    @Query("UPDATE Avatar a SET a.previewStatus = :previewStatus " +
+            "WHERE a.id = :id AND a.contentHash = :contentHash")
+    int updatePreviewStatus(Long id, String contentHash, PreviewStatus previewStatus);
+}
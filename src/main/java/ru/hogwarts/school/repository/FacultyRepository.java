@@ -4,10 +4,6 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import ru.hogwarts.school.entities.Faculty;
 
-import java.util.List;
-
 @Repository
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
-    List<Faculty> findByColor(String color);
-    List<Faculty> findByNameIgnoreCaseOrColorIgnoreCase(String name, String color);
 }
@@ -1,26 +1,49 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentDto;
 import ru.hogwarts.school.entities.Student;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface StudentRepository extends JpaRepository<Student, Long> {
-    List<Student> findAllByAge(int age);
-    List<Student> findByAgeBetween(int minAge, int maxAge);
-    List<Student> findAllByFacultyId(Long facultyId);
-    // Количество всех студентов
-    @Query("SELECT COUNT(s) FROM Student s")
-    int getTotalCountOfStudents();
-
-    // Средний возраст студентов
-    @Query("SELECT AVG(s.age) FROM Student s")
-    double getAverageAge();
-
-    // 5 последних студентов (с наибольшими ID)
-    @Query(value = "SELECT * FROM student ORDER BY id DESC LIMIT 5", nativeQuery = true)
-    List<Student> findLastFiveStudents();
+    // Проекция для ответов API: ровно нужные колонки студента и факультета одним запросом
+    String STUDENT_DTO = "SELECT new ru.hogwarts.school.dto.StudentDto(s.id, s.name, s.age, f.id, f.name, f.color) " +
+            "FROM Student s LEFT JOIN s.faculty f ";
+
+    @Query(STUDENT_DTO + "WHERE s.id = :id")
+    Optional<StudentDto> findDtoById(Long id);
+
+    @Query(STUDENT_DTO + "WHERE s.age = :age ORDER BY s.id")
+    List<StudentDto> findDtosByAge(int age);
+
+    @Query(STUDENT_DTO + "WHERE s.age BETWEEN :minAge AND :maxAge ORDER BY s.id")
+    List<StudentDto> findDtosByAgeBetween(int minAge, int maxAge);
+
+    @Query(STUDENT_DTO + "WHERE f.id = :facultyId ORDER BY s.id")
+    List<StudentDto> findDtosByFacultyId(Long facultyId);
+
+    // Распределение студентов по возрастам для пересчета статистики
+    @Query("SELECT new ru.hogwarts.school.dto.AgeCount(s.age, COUNT(s)) FROM Student s GROUP BY s.age")
+    List<AgeCount> countByAge();
+
+    // Имена по префиксу в нижнем регистре, prefixEnd — граница диапазона (см. StudentSearchService.prefixEnd).
+    // Сравнения ~>=~/~<~ идут по индексу lower(name) text_pattern_ops и в общем плане подготовленного
+    // запроса, в отличие от LIKE :prefix; порядок берется из индекса
+    @Query(value = "SELECT name FROM student WHERE lower(name) ~>=~ :prefix AND lower(name) ~<~ :prefixEnd " +
+            "ORDER BY lower(name) USING ~<~", nativeQuery = true)
+    List<String> findNamesByLowerCasePrefix(String prefix, String prefixEnd);
+
+    // Keyset-пагинация по первичному ключу
+    @Query(STUDENT_DTO + "WHERE s.id > :id ORDER BY s.id ASC")
+    List<StudentDto> findDtosAfter(long id, Limit limit);
+
+    @Query(STUDENT_DTO + "WHERE s.id < :id ORDER BY s.id DESC")
+    List<StudentDto> findDtosBefore(long id, Limit limit);
 }
@@ -0,0 +1,354 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.dto.AvatarImportReport;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.dto.AvatarImportResult.Status;
+import ru.hogwarts.school.entities.PreviewStatus;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Пакетный импорт аватаров из ZIP-архива.
+ * <p>
+ * Имя файла в архиве — ID студента или его имя ({@code 42.jpg}, {@code Harry Potter.png}).
+ * Архив читается потоково: каждый элемент проверяется и пишется во временный файл.
+ * После поиска студентов превью принятых элементов генерируются в пуле по числу
+ * процессоров, а их файлы публикуются в хранилище в той же транзакции, что и записи
+ * аватаров (JDBC-пакеты с upsert по student_id).
+ */
+@Service
+public class AvatarImportService {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarImportService.class);
+    private static final int PREVIEW_WIDTH = 100;
+    private static final int BATCH_SIZE = 500;
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO avatar (student_id, file_path, file_size, media_type, content_hash,
+                                width, height, preview_status)
+            VALUES (:studentId, :filePath, :fileSize, :mediaType, :contentHash,
+                    :width, :height, :previewStatus)
+            ON CONFLICT (student_id) DO UPDATE SET
+                file_path = EXCLUDED.file_path,
+                file_size = EXCLUDED.file_size,
+                media_type = EXCLUDED.media_type,
+                content_hash = EXCLUDED.content_hash,
+                width = EXCLUDED.width,
+                height = EXCLUDED.height,
+                preview_status = EXCLUDED.preview_status
+            """;
+
+    private static final String UPSERT_PREVIEW_SQL = """
+            INSERT INTO avatar_preview (avatar_id, data)
+            SELECT id, :data FROM avatar WHERE student_id = :studentId
+            ON CONFLICT (avatar_id) DO UPDATE SET data = EXCLUDED.data
+            """;
+
+    private static final String DELETE_PREVIEW_SQL = """
+            DELETE FROM avatar_preview
+            WHERE avatar_id = (SELECT id FROM avatar WHERE student_id = :studentId)
+            """;
+
+    private final AvatarStorage avatarStorage;
+    private final ThumbnailEngine thumbnailEngine;
+    private final AvatarService avatarService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor decodePool;
+
+    @Value("${avatar.max-file-size:10MB}")
+    private DataSize maxFileSize;
+
+    @Value("${avatar.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Value("${avatar.import.max-entries:50000}")
+    private int maxEntries;
+
+    public AvatarImportService(AvatarStorage avatarStorage,
+                               ThumbnailEngine thumbnailEngine,
+                               AvatarService avatarService,
+                               NamedParameterJdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${avatar.import.decode-threads:4}") int decodeThreads,
+                               @Value("${avatar.import.decode-queue-capacity:1000}") int decodeQueueCapacity) {
+        this.avatarStorage = avatarStorage;
+        this.thumbnailEngine = thumbnailEngine;
+        this.avatarService = avatarService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        // При заполненной очереди превью декодирует поток запроса импорта
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.decodePool = new ThreadPoolExecutor(decodeThreads, decodeThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(decodeQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "avatar-import-decode-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public AvatarImportReport importArchive(InputStream archive) throws IOException {
+        logger.info("Вызван метод пакетного импорта аватаров");
+        long start = System.nanoTime();
+        List<ImportEntry> entries = new ArrayList<>();
+
+        try {
+            try (ZipInputStream zip = new ZipInputStream(archive, StandardCharsets.UTF_8)) {
+                ZipEntry zipEntry;
+                while ((zipEntry = zip.getNextEntry()) != null) {
+                    String name = zipEntry.getName();
+                    if (zipEntry.isDirectory() || isHidden(name)) {
+                        continue;
+                    }
+                    if (entries.size() >= maxEntries) {
+                        throw new IllegalArgumentException("Archive contains more than " + maxEntries + " entries");
+                    }
+                    ImportEntry entry = new ImportEntry(name, studentKey(name));
+                    entries.add(entry);
+                    try {
+                        entry.staged = avatarStorage.stage(new NonClosingInputStream(zip), maxFileSize.toBytes(), maxPixels);
+                    } catch (IllegalArgumentException e) {
+                        entry.result(Status.REJECTED, e.getMessage());
+                    }
+                }
+            }
+
+            resolveStudents(entries);
+            List<ImportEntry> accepted = selectLatestPerStudent(entries);
+            createPreviews(accepted);
+            saveInBatches(accepted);
+        } finally {
+            // Файлы отклоненных и замененных элементов в хранилище не попадают
+            for (ImportEntry entry : entries) {
+                if (entry.staged != null) {
+                    entry.staged.close();
+                }
+            }
+        }
+
+        List<AvatarImportResult> results = entries.stream().map(ImportEntry::toResult).toList();
+        int imported = (int) results.stream().filter(result -> result.status() == Status.IMPORTED).count();
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Импорт аватаров завершен: {} из {} за {} мс", imported, results.size(), durationMs);
+        return new AvatarImportReport(results.size(), imported, results.size() - imported, durationMs, results);
+    }
+
+    // Декодируются только принятые элементы, одинаковое содержимое — один раз
+    private void createPreviews(List<ImportEntry> accepted) {
+        Map<String, CompletableFuture<byte[]>> previews = new HashMap<>();
+        for (ImportEntry entry : accepted) {
+            Path file = entry.staged.tmpFile();
+            previews.computeIfAbsent(entry.staged.hash(), hash -> CompletableFuture.supplyAsync(
+                    () -> createPreview(file), decodePool));
+        }
+        for (ImportEntry entry : accepted) {
+            entry.preview = previews.get(entry.staged.hash()).join();
+            entry.result(entry.preview != null ? Status.IMPORTED : Status.PREVIEW_FAILED, null);
+        }
+    }
+
+    private byte[] createPreview(Path file) {
+        try {
+            return thumbnailEngine.createThumbnail(file, PREVIEW_WIDTH);
+        } catch (Exception e) {
+            logger.warn("Не удалось сгенерировать превью {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    // Студенты ищутся пачками, а не отдельным запросом на каждый элемент архива
+    private void resolveStudents(List<ImportEntry> entries) {
+        Set<Long> ids = new HashSet<>();
+        Set<String> names = new HashSet<>();
+        for (ImportEntry entry : entries) {
+            if (entry.status == null) {
+                if (entry.key instanceof Long id) {
+                    ids.add(id);
+                } else {
+                    names.add((String) entry.key);
+                }
+            }
+        }
+        Set<Long> existingIds = new HashSet<>();
+        for (List<Long> chunk : chunks(ids)) {
+            existingIds.addAll(jdbcTemplate.queryForList("SELECT id FROM student WHERE id IN (:ids)",
+                    Map.of("ids", chunk), Long.class));
+        }
+        Map<String, Long> idsByName = new HashMap<>();
+        for (List<String> chunk : chunks(names)) {
+            jdbcTemplate.query("SELECT id, name FROM student WHERE name IN (:names)", Map.of("names", chunk),
+                    rs -> {
+                        idsByName.put(rs.getString("name"), rs.getLong("id"));
+                    });
+        }
+
+        for (ImportEntry entry : entries) {
+            if (entry.status != null) {
+                continue;
+            }
+            entry.studentId = entry.key instanceof Long id
+                    ? (existingIds.contains(id) ? id : null)
+                    : idsByName.get((String) entry.key);
+            if (entry.studentId == null) {
+                entry.result(Status.STUDENT_NOT_FOUND, "No student matches " + entry.key);
+            }
+        }
+    }
+
+    // Если у студента несколько файлов в архиве, применяется последний
+    private static List<ImportEntry> selectLatestPerStudent(List<ImportEntry> entries) {
+        Map<Long, ImportEntry> latest = new LinkedHashMap<>();
+        for (ImportEntry entry : entries) {
+            if (entry.status != null) {
+                continue;
+            }
+            ImportEntry previous = latest.put(entry.studentId, entry);
+            if (previous != null) {
+                previous.result(Status.SKIPPED, "Superseded by " + entry.name);
+            }
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private void saveInBatches(List<ImportEntry> accepted) {
+        if (accepted.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            List<AvatarStorage.StoredContent> contents = avatarService.publishContents(
+                    accepted.stream().map(entry -> entry.staged).toList());
+            for (int i = 0; i < accepted.size(); i++) {
+                accepted.get(i).content = contents.get(i);
+            }
+            Map<Long, String[]> previous = loadPrevious(accepted);
+            for (int from = 0; from < accepted.size(); from += BATCH_SIZE) {
+                List<ImportEntry> batch = accepted.subList(from, Math.min(from + BATCH_SIZE, accepted.size()));
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batch.stream().map(this::toParameters)
+                        .toArray(SqlParameterSource[]::new));
+                jdbcTemplate.batchUpdate(UPSERT_PREVIEW_SQL, batch.stream().filter(entry -> entry.preview != null)
+                        .map(this::toParameters).toArray(SqlParameterSource[]::new));
+                jdbcTemplate.batchUpdate(DELETE_PREVIEW_SQL, batch.stream().filter(entry -> entry.preview == null)
+                        .map(this::toParameters).toArray(SqlParameterSource[]::new));
+                logger.debug("Сохранен пакет из {} аватаров", batch.size());
+            }
+            previous.forEach((studentId, hashAndPath) -> avatarService.releaseIfUnused(hashAndPath[0], hashAndPath[1]));
+            accepted.forEach(entry -> avatarService.invalidatePreviewAfterCommit(entry.studentId));
+        });
+    }
+
+    // Прежнее содержимое заменяемых аватаров, чтобы освободить неиспользуемые файлы
+    private Map<Long, String[]> loadPrevious(List<ImportEntry> accepted) {
+        Map<Long, String[]> previous = new HashMap<>();
+        List<Long> studentIds = accepted.stream().map(entry -> entry.studentId).toList();
+        for (List<Long> chunk : chunks(studentIds)) {
+            jdbcTemplate.query("SELECT student_id, content_hash, file_path FROM avatar WHERE student_id IN (:ids)",
+                    Map.of("ids", chunk), rs -> {
+                        previous.put(rs.getLong("student_id"),
+                                new String[]{rs.getString("content_hash"), rs.getString("file_path")});
+                    });
+        }
+        return previous;
+    }
+
+    private SqlParameterSource toParameters(ImportEntry entry) {
+        AvatarStorage.StoredContent content = entry.content;
+        return new MapSqlParameterSource()
+                .addValue("studentId", entry.studentId)
+                .addValue("filePath", content.path().toString())
+                .addValue("fileSize", content.size())
+                .addValue("mediaType", content.image().mediaType())
+                .addValue("contentHash", content.hash())
+                .addValue("width", content.image().width())
+                .addValue("height", content.image().height())
+                .addValue("data", entry.preview)
+                .addValue("previewStatus", (entry.preview != null ? PreviewStatus.READY : PreviewStatus.FAILED).name());
+    }
+
+    private static Object studentKey(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        String key = (dot > 0 ? fileName.substring(0, dot) : fileName).trim();
+        return key.chars().allMatch(Character::isDigit) && !key.isEmpty() && key.length() < 19
+                ? (Object) Long.valueOf(key)
+                : key;
+    }
+
+    private static boolean isHidden(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        return entryName.startsWith("__MACOSX/") || fileName.startsWith(".");
+    }
+
+    private static <T> List<List<T>> chunks(Collection<T> values) {
+        List<T> list = new ArrayList<>(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += LOOKUP_CHUNK_SIZE) {
+            chunks.add(list.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, list.size())));
+        }
+        return chunks;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decodePool.shutdown();
+    }
+
+    private static final class ImportEntry {
+        private final String name;
+        private final Object key;
+        private AvatarStorage.StagedContent staged;
+        private AvatarStorage.StoredContent content;
+        private byte[] preview;
+        private Long studentId;
+        private Status status;
+        private String message;
+
+        private ImportEntry(String name, Object key) {
+            this.name = name;
+            this.key = key;
+        }
+
+        private void result(Status status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        private AvatarImportResult toResult() {
+            return new AvatarImportResult(name, studentId, status, message);
+        }
+    }
+
+    // ZipInputStream не должен закрываться при чтении отдельного элемента
+    private static final class NonClosingInputStream extends FilterInputStream {
+        private NonClosingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package ru.hogwarts.school.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.dto.AvatarPreviewData;
+import ru.hogwarts.school.dto.CacheStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Кеш готовых превью аватаров в памяти, ключ — ID студента.
+ * Объем ограничен суммарным размером байтов превью, вытеснение — W-TinyLFU (Caffeine).
+ */
+@Component
+public class AvatarPreviewCache {
+    // Оценка накладных расходов на запись кеша помимо массива байтов
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final Cache<Long, AvatarPreviewData> cache;
+    // Счетчик инвалидаций: загрузка, во время которой он изменился, в кеш не попадает
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public AvatarPreviewCache(@Value("${avatar.preview.cache-max-size:64MB}") DataSize maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((Long studentId, AvatarPreviewData preview) -> preview.data().length + ENTRY_OVERHEAD_BYTES)
+                .recordStats()
+                // Обслуживание кеша в вызывающем потоке: вытеснение сразу видно в статистике
+                .executor(Runnable::run)
+                .build();
+    }
+
+    /**
+     * Возвращает превью из кеша или загружает его. Загрузка идет вне кеша: запрос к базе не
+     * держит блокировку Caffeine, и инвалидация во время загрузки не ждет ее окончания; два
+     * одновременных промаха одного ключа загрузят превью дважды.
+     * Кешируются только готовые превью и только если за время загрузки не было
+     * инвалидации: иначе прочитанное до коммита превью могло бы остаться в кеше.
+     */
+    public AvatarPreviewData get(Long studentId, Function<Long, AvatarPreviewData> loader) {
+        AvatarPreviewData cached = cache.getIfPresent(studentId);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = invalidations.get();
+        AvatarPreviewData loaded = loader.apply(studentId);
+        if (loaded != null && loaded.data() != null && invalidations.get() == generation) {
+            cache.put(studentId, loaded);
+            // Инвалидация между проверкой и put: запись убирается здесь, а не ею
+            if (invalidations.get() != generation) {
+                cache.invalidate(studentId);
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(Long studentId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(studentId);
+    }
+
+    // Аватар удаляется вместе со студентом каскадом в БД, без отдельного вызова сервиса
+    @EventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        if (event.after() == null) {
+            invalidate(event.id());
+        }
+    }
+
+    public CacheStats stats() {
+        com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+        Policy.Eviction<Long, AvatarPreviewData> eviction = cache.policy().eviction().orElseThrow();
+        return new CacheStats(stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), stats.evictionWeight(), cache.estimatedSize(),
+                eviction.weightedSize().orElse(0L), eviction.getMaximum());
+    }
+}
@@ -0,0 +1,129 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.entities.Avatar;
+import ru.hogwarts.school.entities.PreviewStatus;
+import ru.hogwarts.school.repository.AvatarPreviewRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Фоновая генерация превью аватаров.
+ * Задачи выполняются ограниченным пулом потоков с ограниченной очередью; при
+ * переполнении очереди задача выполняется в потоке загрузки (CallerRunsPolicy),
+ * что замедляет приток новых загрузок вместо потери работы.
+ * Соединение с БД занимается только на время короткой записи готового превью.
+ */
+@Component
+public class AvatarPreviewGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarPreviewGenerator.class);
+    private static final long RETRY_DELAY_MS = 200;
+    private static final int PREVIEW_WIDTH = 100;
+
+    private final AvatarRepository avatarRepository;
+    private final AvatarPreviewRepository avatarPreviewRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ThumbnailEngine thumbnailEngine;
+    private final ThreadPoolExecutor executor;
+    private final int maxAttempts;
+
+    public AvatarPreviewGenerator(AvatarRepository avatarRepository,
+                                  AvatarPreviewRepository avatarPreviewRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  ThumbnailEngine thumbnailEngine,
+                                  @Value("${avatar.preview.threads:2}") int threads,
+                                  @Value("${avatar.preview.queue-capacity:100}") int queueCapacity,
+                                  @Value("${avatar.preview.max-attempts:3}") int maxAttempts) {
+        this.avatarRepository = avatarRepository;
+        this.avatarPreviewRepository = avatarPreviewRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.thumbnailEngine = thumbnailEngine;
+        this.maxAttempts = maxAttempts;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "avatar-preview-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    public void submit(Long avatarId, Path filePath, String contentHash) {
+        logger.debug("Постановка в очередь генерации превью аватара ID: {} (в очереди: {})",
+                avatarId, executor.getQueue().size());
+        executor.execute(() -> generate(avatarId, filePath, contentHash));
+    }
+
+    // Превью, не сгенерированные до перезапуска приложения, ставятся в очередь повторно
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        for (Avatar avatar : avatarRepository.findAllByPreviewStatus(PreviewStatus.PENDING)) {
+            if (avatar.getFilePath() != null && avatar.getContentHash() != null) {
+                submit(avatar.getId(), Path.of(avatar.getFilePath()), avatar.getContentHash());
+            }
+        }
+    }
+
+    private void generate(Long avatarId, Path filePath, String contentHash) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                byte[] preview = thumbnailEngine.createThumbnail(filePath, PREVIEW_WIDTH);
+                savePreview(avatarId, contentHash, preview, PreviewStatus.READY);
+                logger.debug("Превью аватара ID {} готово", avatarId);
+                return;
+            } catch (IllegalArgumentException e) {
+                logger.error("Не удалось сгенерировать превью аватара ID {}: {}", avatarId, e.getMessage());
+                break;
+            } catch (Exception e) {
+                logger.warn("Попытка {} генерации превью аватара ID {} не удалась: {}",
+                        attempt, avatarId, e.getMessage());
+                if (attempt < maxAttempts && !sleep(RETRY_DELAY_MS * attempt)) {
+                    break;
+                }
+            }
+        }
+        savePreview(avatarId, contentHash, null, PreviewStatus.FAILED);
+    }
+
+    // Статус и байты превью пишутся вместе; если аватар уже перезаписан, результат отбрасывается
+    private void savePreview(Long avatarId, String contentHash, byte[] preview, PreviewStatus status) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            if (avatarRepository.updatePreviewStatus(avatarId, contentHash, status) == 0) {
+                logger.debug("Аватар ID {} изменился, превью отброшено", avatarId);
+                return;
+            }
+            if (preview != null) {
+                avatarPreviewRepository.upsert(avatarId, preview);
+            } else {
+                avatarPreviewRepository.deleteByAvatarId(avatarId);
+            }
+        });
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,228 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Дисковый кеш превью аватаров нескольких размеров.
+ * Превью создается при первом запросе и затем отдается прямо с диска.
+ * Суммарный размер кеша ограничен; при превышении удаляются давно не
+ * запрашивавшиеся файлы (LRU).
+ */
+@Component
+public class AvatarRenditionCache {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarRenditionCache.class);
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    private final ThumbnailEngine thumbnailEngine;
+    private final Path cacheDir;
+    private final long maxSizeBytes;
+    private final Set<Integer> widths;
+
+    // Порядок доступа: первый элемент — давно не использовавшийся файл
+    private final LinkedHashMap<Path, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, CompletableFuture<Path>> inProgress = new ConcurrentHashMap<>();
+    private long totalBytes;
+
+    public AvatarRenditionCache(ThumbnailEngine thumbnailEngine,
+                                @Value("${path.to.avatars.folder}") String avatarDir,
+                                @Value("${avatar.preview.widths:48,100,200,400}") List<Integer> widths,
+                                @Value("${avatar.rendition.cache-max-size:256MB}") DataSize maxSize) throws IOException {
+        this.thumbnailEngine = thumbnailEngine;
+        this.cacheDir = Path.of(avatarDir, "renditions");
+        this.maxSizeBytes = maxSize.toBytes();
+        this.widths = Set.copyOf(widths);
+        loadExisting();
+    }
+
+    public boolean supportsWidth(int width) {
+        return widths.contains(width);
+    }
+
+    /**
+     * Возвращает путь к превью нужной ширины, создавая его при первом обращении.
+     * Параллельные запросы одного и того же превью генерируют его один раз.
+     */
+    public Path getRendition(String contentHash, Path source, int width) throws IOException {
+        if (!supportsWidth(width)) {
+            throw new IllegalArgumentException("Unsupported preview width: " + width);
+        }
+        String fileName = source.getFileName().toString();
+        String extension = fileName.substring(fileName.lastIndexOf(".") + 1);
+        Path rendition = cacheDir.resolve(contentHash.substring(0, 2))
+                .resolve(contentHash + "-" + width + "." + extension);
+
+        synchronized (entries) {
+            if (entries.get(rendition) != null && Files.exists(rendition)) {
+                return rendition;
+            }
+        }
+        CompletableFuture<Path> future = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inProgress.putIfAbsent(rendition, future);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            future.complete(generate(source, rendition, width));
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            inProgress.remove(rendition);
+        }
+        return await(future);
+    }
+
+    /**
+     * Читает превью нужной ширины. Файл открывается под той же блокировкой, что и
+     * вытеснение, поэтому открытый файл дочитывается, даже если его сразу вытеснит
+     * другой запрос. Исчезнувший до открытия файл считается промахом и создается заново.
+     */
+    public Rendition readRendition(String contentHash, Path source, int width) throws IOException {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            Path path = getRendition(contentHash, source, width);
+            FileChannel channel;
+            long lastModified;
+            synchronized (entries) {
+                if (entries.get(path) == null) {
+                    continue;
+                }
+                try {
+                    channel = FileChannel.open(path, StandardOpenOption.READ);
+                    lastModified = Files.getLastModifiedTime(path).toMillis();
+                } catch (NoSuchFileException e) {
+                    Long size = entries.remove(path);
+                    totalBytes -= size == null ? 0 : size;
+                    continue;
+                }
+            }
+            try (channel) {
+                ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // читаем до конца файла
+                }
+                return new Rendition(buffer.array(), lastModified);
+            }
+        }
+        throw new IOException("Rendition " + contentHash + "-" + width + " was evicted before it could be read");
+    }
+
+    // Удаляет все превью содержимого, которое больше не используется
+    public void remove(String contentHash) {
+        Path shard = cacheDir.resolve(contentHash.substring(0, 2));
+        synchronized (entries) {
+            Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, Long> entry = iterator.next();
+                Path path = entry.getKey();
+                if (path.getParent().equals(shard) && path.getFileName().toString().startsWith(contentHash + "-")) {
+                    deleteQuietly(path);
+                    totalBytes -= entry.getValue();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private Path generate(Path source, Path rendition, int width) throws IOException {
+        logger.debug("Генерация превью шириной {} для {}", width, source);
+        byte[] data = thumbnailEngine.createThumbnail(source, width);
+        Files.createDirectories(rendition.getParent());
+        Path tmpFile = Files.createTempFile(rendition.getParent(), "rendition-", ".part");
+        try {
+            Files.write(tmpFile, data);
+            Files.move(tmpFile, rendition, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmpFile);
+        }
+        synchronized (entries) {
+            Long previous = entries.put(rendition, (long) data.length);
+            totalBytes += data.length - (previous == null ? 0 : previous);
+            evictIfNeeded(rendition);
+        }
+        return rendition;
+    }
+
+    private void evictIfNeeded(Path keep) {
+        Iterator<Map.Entry<Path, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxSizeBytes && iterator.hasNext()) {
+            Map.Entry<Path, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            deleteQuietly(eldest.getKey());
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+            logger.debug("Превью {} вытеснено из кеша", eldest.getKey());
+        }
+    }
+
+    // Восстановление индекса кеша после перезапуска, от старых файлов к новым
+    private void loadExisting() throws IOException {
+        if (!Files.isDirectory(cacheDir)) {
+            return;
+        }
+        Map<Path, BasicFileAttributes> files = new HashMap<>();
+        try (Stream<Path> paths = Files.walk(cacheDir)) {
+            paths.filter(path -> !path.getFileName().toString().endsWith(".part")).forEach(path -> {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        files.put(path, attributes);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        synchronized (entries) {
+            files.entrySet().stream()
+                    .sorted(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()))
+                    .forEach(entry -> {
+                        entries.put(entry.getKey(), entry.getValue().size());
+                        totalBytes += entry.getValue().size();
+                    });
+            evictIfNeeded(null);
+        }
+        logger.info("Кеш превью: {} файлов, {} байт", entries.size(), totalBytes);
+    }
+
+    private static Path await(CompletableFuture<Path> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    public record Rendition(byte[] data, long lastModified) {
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Не удалось удалить превью {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -1,114 +1,298 @@
 package ru.hogwarts.school.service;
 
-import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.dto.AvatarFile;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.AvatarInfoSlice;
+import ru.hogwarts.school.dto.AvatarPreviewData;
+import ru.hogwarts.school.dto.CacheStats;
 import ru.hogwarts.school.entities.Avatar;
-import ru.hogwarts.school.entities.Student;
+import ru.hogwarts.school.entities.PreviewStatus;
+import ru.hogwarts.school.repository.AvatarPreviewRepository;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.*;
-import java.nio.file.Files;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
-@Transactional
 public class AvatarService {
     private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
+    private static final int MAX_PAGE_SIZE = 100;
     private final StudentRepository studentRepository;
     private final FacultyRepository facultyRepository;
     private final AvatarRepository avatarRepository;
+    private final AvatarPreviewRepository avatarPreviewRepository;
+    private final AvatarStorage avatarStorage;
+    private final AvatarPreviewGenerator previewGenerator;
+    private final AvatarRenditionCache renditionCache;
+    private final AvatarPreviewCache previewCache;
+    private final TransactionTemplate transactionTemplate;
+    // Освобождение файлов вызывается после завершения внешней транзакции и требует своей
+    private final TransactionTemplate releaseTemplate;
 
-    @Value("${path.to.avatars.folder}")
-    private String avatarDir;
+    @Value("${avatar.max-file-size:10MB}")
+    private DataSize maxFileSize;
+
+    @Value("${avatar.max-pixels:40000000}")
+    private long maxPixels;
 
     public AvatarService(StudentRepository studentRepository,
                          FacultyRepository facultyRepository,
-                         AvatarRepository avatarRepository) {
+                         AvatarRepository avatarRepository,
+                         AvatarPreviewRepository avatarPreviewRepository,
+                         AvatarStorage avatarStorage,
+                         AvatarPreviewGenerator previewGenerator,
+                         AvatarRenditionCache renditionCache,
+                         AvatarPreviewCache previewCache,
+                         TransactionTemplate transactionTemplate) {
         this.studentRepository = studentRepository;
         this.facultyRepository = facultyRepository;
         this.avatarRepository = avatarRepository;
+        this.avatarPreviewRepository = avatarPreviewRepository;
+        this.avatarStorage = avatarStorage;
+        this.previewGenerator = previewGenerator;
+        this.renditionCache = renditionCache;
+        this.previewCache = previewCache;
+        this.transactionTemplate = transactionTemplate;
+        this.releaseTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.releaseTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
+    /**
+     * Сохраняет оригинал и сразу возвращает управление. Превью генерируется
+     * в фоне {@link AvatarPreviewGenerator}, поэтому транзакция и соединение с БД
+     * занимаются только на время записи метаданных.
+     */
     public void uploadAvatar(Long studentId, MultipartFile avatarFile) throws IOException {
         logger.info("Вызван метод загрузки аватара для студента ID: {}", studentId);
-        Student student = studentRepository.getById(studentId);
-        Path filePath = Path.of(avatarDir, student + "." + getExtensions(avatarFile.getOriginalFilename()));
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-
-        try (
-                InputStream is = avatarFile.getInputStream();
-                OutputStream os = new FileOutputStream(filePath.toFile());
-                BufferedInputStream bis = new BufferedInputStream(is, 1024);
-                BufferedOutputStream bos = new BufferedOutputStream(os, 1024);
-        ) {
-            bis.transferTo(os);
-            logger.debug("Аватар сохранен по пути: {}", filePath);
+        if (avatarFile.getSize() > maxFileSize.toBytes()) {
+            logger.warn("Файл аватара слишком большой: {} байт", avatarFile.getSize());
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Avatar file exceeds " + maxFileSize);
+        }
+
+        AvatarStorage.StagedContent staged;
+        try (InputStream is = avatarFile.getInputStream()) {
+            staged = avatarStorage.stage(is, maxFileSize.toBytes(), maxPixels);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Отклонен файл аватара для студента ID {}: {}", studentId, e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
 
-        Avatar avatar = findAvatar(studentId);
-        avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(avatarFile.getSize());
-        avatar.setMediaType(avatarFile.getContentType());
-        avatar.setData(generateDataForDB(filePath));
-        avatarRepository.save(avatar);
+        Avatar avatar;
+        try (staged) {
+            avatar = transactionTemplate.execute(status -> {
+                AvatarStorage.StoredContent content = publishContent(staged);
+                logger.debug("Аватар сохранен по пути: {}", content.path());
+                Avatar existing = findAvatar(studentId);
+                String previousHash = existing.getContentHash();
+                String previousPath = existing.getFilePath();
+
+                existing.setStudent(studentRepository.getById(studentId));
+                existing.setContentHash(content.hash());
+                existing.setFilePath(content.path().toString());
+                existing.setFileSize(content.size());
+                existing.setMediaType(content.image().mediaType());
+                existing.setWidth(content.image().width());
+                existing.setHeight(content.image().height());
+                Long readyPreviewId = findReadyPreview(content.hash());
+                existing.setPreviewStatus(readyPreviewId != null ? PreviewStatus.READY : PreviewStatus.PENDING);
+                Avatar saved = avatarRepository.save(existing);
+                if (readyPreviewId != null) {
+                    avatarPreviewRepository.copy(readyPreviewId, saved.getId());
+                } else {
+                    avatarPreviewRepository.deleteByAvatarId(saved.getId());
+                }
+                releaseIfUnused(previousHash, previousPath);
+                invalidatePreviewAfterCommit(studentId);
+                return saved;
+            });
+        }
+
+        if (avatar.getPreviewStatus() == PreviewStatus.PENDING) {
+            previewGenerator.submit(avatar.getId(), Path.of(avatar.getFilePath()), avatar.getContentHash());
+        }
         logger.info("Аватар для студента ID: {} успешно загружен", studentId);
     }
 
-    private byte[] generateDataForDB(Path filePath) {
-        logger.debug("Генерация превью для аватара: {}", filePath);
-        try (
-                InputStream is = Files.newInputStream(filePath);
-                BufferedInputStream bis = new BufferedInputStream(is, 1024);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ) {
-            BufferedImage image = ImageIO.read(bis);
-            if (image == null) {
-                logger.error("Не удалось прочитать изображение: {}", filePath);
-                throw new RuntimeException("Invalid image file");
-            }
+    // Для уже известного содержимого готовое превью копируется без повторного декодирования
+    private Long findReadyPreview(String contentHash) {
+        return avatarRepository.findFirstByContentHashAndPreviewStatus(contentHash, PreviewStatus.READY)
+                .map(Avatar::getId)
+                .orElse(null);
+    }
 
-            int height = image.getHeight() / (image.getWidth() / 100);
-            BufferedImage preview = new BufferedImage(100, height, image.getType());
-            Graphics2D graphics2D = preview.createGraphics();
-            graphics2D.drawImage(image, 0, 0, 100, height, null);
-            graphics2D.dispose();
+    /**
+     * Публикует принятый файл в текущей транзакции. До коммита держится блокировка
+     * шарда хеша, которую берет и {@link #releaseContent}, поэтому файл не удалится, пока
+     * ссылка на него не зафиксирована. При откате файл освобождается, если он не нужен
+     * другим аватарам.
+     */
+    AvatarStorage.StoredContent publishContent(AvatarStorage.StagedContent staged) {
+        return publishContents(List.of(staged)).get(0);
+    }
 
-            String extension = getExtensions(filePath.getFileName().toString());
-            ImageIO.write(preview, extension, baos);
-            return baos.toByteArray();
+    /**
+     * Публикует несколько файлов в текущей транзакции. Шарды блокируются по возрастанию
+     * и до записи строк, чтобы параллельные импорты не блокировали друг друга по кругу.
+     */
+    List<AvatarStorage.StoredContent> publishContents(List<AvatarStorage.StagedContent> staged) {
+        staged.stream()
+                .map(content -> contentShard(content.hash()))
+                .distinct()
+                .sorted()
+                .forEach(avatarRepository::lockContentShard);
+        List<AvatarStorage.StoredContent> contents = new ArrayList<>(staged.size());
+        try {
+            for (AvatarStorage.StagedContent content : staged) {
+                contents.add(avatarStorage.publish(content));
+            }
         } catch (IOException e) {
-            logger.error("Ошибка генерации превью: {}", e.getMessage());
-            throw new RuntimeException(e);
+            throw new UncheckedIOException(e);
+        } finally {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        contents.forEach(content -> releaseContent(content.hash(), content.path().toString()));
+                    }
+                }
+            });
+        }
+        return contents;
+    }
+
+    // Блокировки берутся по первому байту хеша (256 шардов, как каталоги хранилища),
+    // чтобы большой импорт не исчерпал таблицу блокировок PostgreSQL
+    private static int contentShard(String hash) {
+        return Integer.parseInt(hash, 0, 2, 16);
+    }
+
+    /**
+     * Удаляет прежний файл аватара после коммита, если на его содержимое
+     * больше не ссылается ни одна запись {@link Avatar}.
+     */
+    void releaseIfUnused(String previousHash, String previousPath) {
+        if (previousPath == null) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                releaseContent(previousHash, previousPath);
+            }
+        });
+    }
+
+    // Проверка ссылок и удаление файла выполняются под блокировкой хеша в отдельной транзакции
+    private void releaseContent(String hash, String filePath) {
+        try {
+            releaseTemplate.executeWithoutResult(status -> {
+                if (hash != null) {
+                    avatarRepository.lockContentShard(contentShard(hash));
+                    if (avatarRepository.countByContentHash(hash) > 0) {
+                        logger.debug("Содержимое {} используется другими аватарами", hash);
+                        return;
+                    }
+                }
+                avatarStorage.delete(Path.of(filePath));
+                if (hash != null) {
+                    renditionCache.remove(hash);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось освободить файл аватара {}: {}", filePath, e.getMessage());
+        }
+    }
+
+    // До коммита в БД еще прежнее превью, поэтому кеш сбрасывается только после фиксации
+    void invalidatePreviewAfterCommit(Long studentId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                previewCache.invalidate(studentId);
+            }
+        });
+    }
+
+    /**
+     * Превью аватара студента; готовые превью отдаются из кеша в памяти без запроса к БД.
+     * Возвращает null, если у студента нет аватара.
+     */
+    public AvatarPreviewData findPreview(Long studentId) {
+        logger.debug("Поиск превью аватара для студента ID: {}", studentId);
+        return previewCache.get(studentId, id -> avatarRepository.findPreviewByStudentId(id).orElse(null));
+    }
+
+    public CacheStats getPreviewCacheStats() {
+        return previewCache.stats();
+    }
+
+    /**
+     * Неизменяемый URL содержимого аватара, пригодный для бессрочного кеширования.
+     */
+    public String getContentUrl(AvatarFile avatar) {
+        if (avatar.contentHash() == null) {
+            return null;
         }
+        return "/avatar/content/" + Path.of(avatar.filePath()).getFileName();
+    }
+
+    public boolean isSupportedPreviewWidth(int width) {
+        return renditionCache.supportsWidth(width);
+    }
+
+    /**
+     * Превью аватара заданной ширины из дискового кеша, создается при первом запросе.
+     */
+    public AvatarRenditionCache.Rendition findRendition(AvatarFile avatar, int width) throws IOException {
+        logger.debug("Поиск превью шириной {} для аватара {}", width, avatar.contentHash());
+        return renditionCache.readRendition(avatar.contentHash(), Path.of(avatar.filePath()), width);
+    }
+
+    public Path findContent(String hash, String extension) {
+        logger.debug("Поиск содержимого аватара: {}.{}", hash, extension);
+        return avatarStorage.resolve(hash, extension);
     }
 
-    public Avatar findAvatar(Long studentId) {
+    private Avatar findAvatar(Long studentId) {
         logger.debug("Поиск аватара для студента ID: {}", studentId);
-        return avatarRepository.findById(studentId).orElse(new Avatar());
+        return avatarRepository.findByStudentId(studentId).orElse(new Avatar());
     }
 
-    private String getExtensions(String filename) {
-        return filename.substring(filename.lastIndexOf(".") + 1);
+    /**
+     * Путь, тип и хеш файла аватара одним запросом без загрузки студента.
+     */
+    public AvatarFile findAvatarFile(Long studentId) {
+        logger.debug("Поиск файла аватара для студента ID: {}", studentId);
+        return avatarRepository.findFileByStudentId(studentId).orElse(new AvatarFile(null, null, null));
     }
 
-    public Page<Avatar> getAllAvatars(int page, int size) {
-        logger.info("Вызван метод получения аватаров. Страница: {}, Размер: {}", page, size);
-        PageRequest pageRequest = PageRequest.of(page, size);
-        Page<Avatar> avatars = avatarRepository.findAll(pageRequest);
-        logger.debug("Получено {} аватаров", avatars.getNumberOfElements());
-        return avatars;
+    public AvatarInfoSlice getAllAvatars(Long after, int size) {
+        logger.info("Вызван метод получения аватаров. После ID: {}, Размер: {}", after, size);
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Slice<AvatarInfo> slice = avatarRepository.findInfosAfter(after == null ? 0 : after, PageRequest.of(0, pageSize));
+        List<AvatarInfo> content = slice.getContent();
+        Long nextCursor = slice.hasNext() ? content.get(content.size() - 1).id() : null;
+        logger.debug("Получено {} аватаров", content.size());
+        return new AvatarInfoSlice(content, nextCursor, slice.hasNext());
     }
 }
\ No newline at end of file
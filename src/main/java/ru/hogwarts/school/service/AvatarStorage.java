@@ -0,0 +1,218 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+/**
+ * Контентно-адресуемое хранилище файлов аватаров.
+ * Файл хранится под именем SHA-256 своего содержимого в каталоге {@code ab/cd/},
+ * поэтому одинаковые изображения разных студентов занимают место на диске один раз.
+ */
+@Component
+public class AvatarStorage {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarStorage.class);
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final Pattern EXTENSION_PATTERN = Pattern.compile("[0-9a-z]{1,10}");
+    private static final String TMP_DIR = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    public AvatarStorage(@Value("${path.to.avatars.folder}") String avatarDir) {
+        this.root = Path.of(avatarDir);
+    }
+
+    /**
+     * Сохраняет загружаемое изображение: {@link #stage} и сразу {@link #publish}.
+     */
+    public StoredContent store(InputStream inputStream, long maxBytes, long maxPixels) throws IOException {
+        try (StagedContent staged = stage(inputStream, maxBytes, maxPixels)) {
+            return publish(staged);
+        }
+    }
+
+    /**
+     * Принимает изображение за один проход по потоку: неизвестная сигнатура отклоняется
+     * до создания файла, затем поток пишется во временный файл с одновременным вычислением
+     * SHA-256, а по мере чтения определяются формат и размеры (слишком большие изображения
+     * отклоняются до чтения остального тела). В хранилище файл попадает только после {@link #publish}.
+     */
+    public StagedContent stage(InputStream inputStream, long maxBytes, long maxPixels) throws IOException {
+        byte[] signature = inputStream.readNBytes(ImageHeaderReader.SIGNATURE_SIZE);
+        ImageHeaderReader.checkSignature(signature, signature.length);
+
+        Path tmpDir = Files.createDirectories(root.resolve(TMP_DIR));
+        Path tmpFile = Files.createTempFile(tmpDir, "upload-", ".part");
+        try {
+            MessageDigest digest = newDigest();
+            ImageHeaderReader.ImageHeader image;
+            long size;
+            try (OutputStream os = Files.newOutputStream(tmpFile)) {
+                // Исходный поток закрывает вызывающий код, поэтому tee не закрывается
+                TeeInputStream tee = new TeeInputStream(new SequenceInputStream(
+                        new ByteArrayInputStream(signature), inputStream), os, digest, maxBytes);
+                image = ImageHeaderReader.read(tee);
+                if (image.pixels() > maxPixels) {
+                    throw new IllegalArgumentException("Image is too large: " + image.width() + "x" + image.height());
+                }
+                tee.transferTo(OutputStream.nullOutputStream());
+                size = tee.count();
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            return new StagedContent(hash, tmpFile, resolve(hash, image.extension()), size, image);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmpFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Переносит принятый файл на место атомарно. Если файл с таким содержимым
+     * уже есть, новая копия не создается.
+     */
+    public StoredContent publish(StagedContent staged) throws IOException {
+        Path target = staged.target();
+        if (Files.exists(target)) {
+            logger.debug("Содержимое {} уже есть в хранилище, копия не создается", staged.hash());
+            Files.deleteIfExists(staged.tmpFile());
+        } else {
+            Files.createDirectories(target.getParent());
+            moveAtomically(staged.tmpFile(), target);
+            logger.debug("Сохранено новое содержимое аватара: {}", target);
+        }
+        return new StoredContent(staged.hash(), target, staged.size(), staged.image());
+    }
+
+    public Path resolve(String hash, String extension) {
+        if (!HASH_PATTERN.matcher(hash).matches() || !EXTENSION_PATTERN.matcher(extension).matches()) {
+            throw new IllegalArgumentException("Invalid content key: " + hash + "." + extension);
+        }
+        return root.resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(hash + "." + extension);
+    }
+
+    public void delete(Path path) {
+        try {
+            if (Files.deleteIfExists(path)) {
+                logger.debug("Удален неиспользуемый файл аватара: {}", path);
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось удалить файл аватара {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Параллельная загрузка того же содержимого успела раньше — результат тот же
+            logger.debug("Содержимое {} сохранено параллельной загрузкой", target.getFileName());
+        }
+    }
+
+    /**
+     * Поток, который пишет все прочитанные байты в файл и в дайджест и ограничивает
+     * их общее число. Пропуск байтов тоже идет через чтение, чтобы они попали в файл.
+     */
+    private static final class TeeInputStream extends FilterInputStream {
+        private final OutputStream out;
+        private final MessageDigest digest;
+        private final long limit;
+        private long count;
+
+        private TeeInputStream(InputStream in, OutputStream out, MessageDigest digest, long limit) {
+            super(in);
+            this.out = out;
+            this.digest = digest;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                accept(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read > 0) {
+                accept(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void accept(byte[] buffer, int offset, int length) throws IOException {
+            count += length;
+            if (count > limit) {
+                throw new IllegalArgumentException("Avatar file exceeds " + limit + " bytes");
+            }
+            digest.update(buffer, offset, length);
+            out.write(buffer, offset, length);
+        }
+
+        private long count() {
+            return count;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Принятое, но еще не опубликованное содержимое; close() удаляет временный файл,
+     * если он не был перенесен в хранилище.
+     */
+    public record StagedContent(String hash, Path tmpFile, Path target, long size,
+                                ImageHeaderReader.ImageHeader image) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(tmpFile);
+        }
+    }
+
+    public record StoredContent(String hash, Path path, long size, ImageHeaderReader.ImageHeader image) {
+    }
+}
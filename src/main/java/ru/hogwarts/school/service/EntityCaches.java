@@ -0,0 +1,128 @@
+package ru.hogwarts.school.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.dto.CacheStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Кеш отдельных студентов (Spring Cache, провайдер задается spring.cache.*); факультеты
+ * читаются из {@link FacultyCatalog}.
+ * <p>
+ * В кеше лежат неизменяемые {@link ru.hogwarts.school.dto.StudentDto}, поэтому их можно
+ * отдавать из разных запросов. Записи сбрасываются после коммита по событиям
+ * изменений; студенты сбрасываются целиком при изменении факультета (DTO студента содержит
+ * название и цвет факультета) и после массовой записи в обход JPA.
+ * <p>
+ * Загрузка при промахе идет мимо {@code @Cacheable}: сброс между чтением строки и записью в кеш
+ * иначе потерялся бы, и в кеше осталась бы старая версия студента.
+ */
+@Component
+public class EntityCaches {
+    private static final Logger logger = LoggerFactory.getLogger(EntityCaches.class);
+    public static final String STUDENTS = "students";
+
+    private final CacheManager cacheManager;
+    // Счетчик сбросов студентов: загрузка, во время которой он изменился, в кеше не остается
+    private final AtomicLong studentEvictions = new AtomicLong();
+
+    public EntityCaches(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * Студент из кеша или из загрузчика. Поколение сбросов читается до загрузки и проверяется
+     * уже после записи в кеш: если сброс пришелся на загрузку, запись убирается. Сброс после
+     * проверки удалит запись сам.
+     */
+    public <T> T student(Long id, Function<Long, T> loader) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(STUDENTS);
+        if (cache == null) {
+            return loader.apply(id);
+        }
+        org.springframework.cache.Cache.ValueWrapper cached = cache.get(id);
+        if (cached != null) {
+            @SuppressWarnings("unchecked")
+            T value = (T) cached.get();
+            return value;
+        }
+        long generation = studentEvictions.get();
+        T loaded = loader.apply(id);
+        cache.put(id, loaded);
+        if (studentEvictions.get() != generation) {
+            cache.evict(id);
+        }
+        return loaded;
+    }
+
+    @EventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        studentEvictions.incrementAndGet();
+        evict(STUDENTS, event.id());
+    }
+
+    @EventListener
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        if (event.before() != null) {
+            studentEvictions.incrementAndGet();
+            clear(STUDENTS);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentsBulkChanged(StudentsBulkChangedEvent event) {
+        logger.debug("Сброс кеша студентов после массового изменения: {}", event.source());
+        studentEvictions.incrementAndGet();
+        clear(STUDENTS);
+    }
+
+    /**
+     * Статистика кешей с провайдером Caffeine по именам.
+     */
+    public Map<String, CacheStats> stats() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            if (cacheManager.getCache(name) instanceof CaffeineCache caffeineCache) {
+                stats.put(name, stats(caffeineCache.getNativeCache()));
+            }
+        }
+        return stats;
+    }
+
+    private static CacheStats stats(Cache<Object, Object> cache) {
+        com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+        Optional<Policy.Eviction<Object, Object>> eviction = cache.policy().eviction();
+        // Вес есть только у кешей с weigher; для maximumSize это 0, как в AvatarPreviewCache
+        long weightedSize = eviction.map(e -> e.weightedSize().orElse(0L)).orElse(0L);
+        long maximum = eviction.map(Policy.Eviction::getMaximum).orElse(Long.MAX_VALUE);
+        return new CacheStats(stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), stats.evictionWeight(), cache.estimatedSize(),
+                weightedSize, maximum);
+    }
+
+    private void evict(String cacheName, Object key) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        org.springframework.cache.Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.entities.Faculty;
+import ru.hogwarts.school.entities.Student;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Публикует {@link StudentChangedEvent} и {@link FacultyChangedEvent} после коммита
+ * каждой вставки, изменения и удаления студента или факультета через JPA. Прежнее
+ * состояние берется из снимка Hibernate, поэтому событие содержит и старые, и новые значения.
+ */
+@Component
+public class EntityChangeListener implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public EntityChangeListener(EntityManagerFactory entityManagerFactory, ApplicationEventPublisher eventPublisher) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Student student) {
+            eventPublisher.publishEvent(new StudentChangedEvent(student.getId(), null, stateOf(student),
+                    version(event.getPersister(), student)));
+        } else if (event.getEntity() instanceof Faculty faculty) {
+            eventPublisher.publishEvent(new FacultyChangedEvent(faculty.getId(), null, stateOf(faculty),
+                    version(event.getPersister(), faculty)));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Student student && event.getOldState() != null) {
+            StudentChangedEvent.StudentState before = stateOf(event.getPersister(), event.getOldState());
+            StudentChangedEvent.StudentState after = stateOf(student);
+            if (!before.equals(after)) {
+                eventPublisher.publishEvent(new StudentChangedEvent(student.getId(), before, after,
+                        version(event.getPersister(), student)));
+            }
+        } else if (event.getEntity() instanceof Faculty faculty && event.getOldState() != null) {
+            FacultyChangedEvent.FacultyState before = facultyStateOf(event.getPersister(), event.getOldState());
+            FacultyChangedEvent.FacultyState after = stateOf(faculty);
+            if (!before.equals(after)) {
+                eventPublisher.publishEvent(new FacultyChangedEvent(faculty.getId(), before, after,
+                        version(event.getPersister(), faculty)));
+            }
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Student) {
+            StudentChangedEvent.StudentState before = stateOf(event.getPersister(), event.getDeletedState());
+            eventPublisher.publishEvent(new StudentChangedEvent((Long) event.getId(), before, null, 0));
+        } else if (event.getEntity() instanceof Faculty) {
+            FacultyChangedEvent.FacultyState before = facultyStateOf(event.getPersister(), event.getDeletedState());
+            eventPublisher.publishEvent(new FacultyChangedEvent((Long) event.getId(), before, null, 0));
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return Student.class.equals(persister.getMappedClass()) || Faculty.class.equals(persister.getMappedClass());
+    }
+
+    private static StudentChangedEvent.StudentState stateOf(Student student) {
+        return new StudentChangedEvent.StudentState(student.getName(), student.getAge(), facultyId(student.getFaculty()));
+    }
+
+    private static StudentChangedEvent.StudentState stateOf(EntityPersister persister, Object[] state) {
+        List<String> properties = Arrays.asList(persister.getPropertyNames());
+        return new StudentChangedEvent.StudentState(
+                (String) state[properties.indexOf("name")],
+                (Integer) state[properties.indexOf("age")],
+                facultyId((Faculty) state[properties.indexOf("faculty")]));
+    }
+
+    private static FacultyChangedEvent.FacultyState stateOf(Faculty faculty) {
+        return new FacultyChangedEvent.FacultyState(faculty.getName(), faculty.getColor());
+    }
+
+    private static FacultyChangedEvent.FacultyState facultyStateOf(EntityPersister persister, Object[] state) {
+        List<String> properties = Arrays.asList(persister.getPropertyNames());
+        return new FacultyChangedEvent.FacultyState(
+                (String) state[properties.indexOf("name")],
+                (String) state[properties.indexOf("color")]);
+    }
+
+    // Версия, перечитанная Hibernate после записи; у сущностей нет для нее геттера
+    private static long version(EntityPersister persister, Object entity) {
+        return (Long) persister.getPropertyValue(entity, "version");
+    }
+
+    private static Long facultyId(Faculty faculty) {
+        return faculty == null ? null : faculty.getId();
+    }
+}
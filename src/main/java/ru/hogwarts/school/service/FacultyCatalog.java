@@ -0,0 +1,62 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.repository.FacultyRepository;
+
+/**
+ * Текущий {@link FacultySnapshot}. Чтение — одно volatile-чтение без блокировок.
+ * <p>
+ * Снимок загружается при старте, после коммита каждого изменения факультета через JPA
+ * ({@link FacultyChangedEvent}) заменяется копией с этим изменением, а после массового
+ * импорта в обход JPA перечитывается целиком. Писатели сериализуются монитором, поэтому
+ * изменение, пришедшее во время перечитывания, накладывается на новый снимок.
+ */
+@Component
+public class FacultyCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(FacultyCatalog.class);
+
+    private final FacultyRepository facultyRepository;
+    private final Object writeLock = new Object();
+
+    private volatile FacultySnapshot snapshot = FacultySnapshot.EMPTY;
+
+    public FacultyCatalog(FacultyRepository facultyRepository) {
+        this.facultyRepository = facultyRepository;
+    }
+
+    public FacultySnapshot get() {
+        return snapshot;
+    }
+
+    @PostConstruct
+    public void reload() {
+        synchronized (writeLock) {
+            snapshot = FacultySnapshot.of(facultyRepository.findAll());
+            logger.debug("Снимок факультетов перечитан: {} факультетов", snapshot.size());
+        }
+    }
+
+    @EventListener
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        synchronized (writeLock) {
+            FacultyChangedEvent.FacultyState after = event.after();
+            if (after == null) {
+                snapshot = snapshot.without(event.id());
+            } else {
+                snapshot = snapshot.with(new FacultyDto(event.id(), after.name(), after.color()));
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentsBulkChanged(StudentsBulkChangedEvent event) {
+        // CSV-импорт создает факультеты SQL-запросом
+        reload();
+    }
+}
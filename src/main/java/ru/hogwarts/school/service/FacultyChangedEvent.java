@@ -0,0 +1,11 @@
+package ru.hogwarts.school.service;
+
+/**
+ * Зафиксированное изменение факультета. before равен null для созданного факультета,
+ * after — для удаленного. version — версия строки после изменения (см. {@link StudentChangedEvent}).
+ */
+public record FacultyChangedEvent(Long id, FacultyState before, FacultyState after, long version) {
+
+    public record FacultyState(String name, String color) {
+    }
+}
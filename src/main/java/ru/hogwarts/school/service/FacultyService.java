@@ -4,92 +4,114 @@ import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentDto;
 import ru.hogwarts.school.entities.Faculty;
-import ru.hogwarts.school.entities.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
 
-import java.util.Comparator;
 import java.util.List;
 
 @Service
 public class FacultyService {
     private static final Logger logger = LoggerFactory.getLogger(FacultyService.class);
     private final FacultyRepository facultyRepository;
+    private final StudentRepository studentRepository;
+    private final FacultyCatalog facultyCatalog;
+    private final ObjectProvider<StudentColumnStore> columnStore;
 
-    public FacultyService(FacultyRepository facultyRepository) {
+    public FacultyService(FacultyRepository facultyRepository,
+                          StudentRepository studentRepository,
+                          FacultyCatalog facultyCatalog,
+                          ObjectProvider<StudentColumnStore> columnStore) {
         this.facultyRepository = facultyRepository;
+        this.studentRepository = studentRepository;
+        this.facultyCatalog = facultyCatalog;
+        this.columnStore = columnStore;
     }
 
     @Transactional
-    public Faculty addFaculty(Faculty faculty) {
+    public FacultyDto addFaculty(Faculty faculty) {
         logger.info("Вызван метод создания факультета");
         Faculty addedFaculty = facultyRepository.save(faculty);
         logger.debug("Создан факультет: {}", addedFaculty);
-        return addedFaculty;
+        return FacultyDto.from(addedFaculty);
     }
 
-    public Faculty getFaculty(Long id) {
+    /**
+     * Факультет по ID из снимка {@link FacultyCatalog}, без запроса к базе.
+     */
+    public FacultyDto getFaculty(Long id) {
         logger.debug("Вызван метод получения факультета по ID: {}", id);
-        return facultyRepository.findById(id)
-                .orElseThrow(() -> {
-                    logger.error("Факультет с ID {} не найден", id);
-                    return new EntityNotFoundException("Факультет не найден");
-                });
+        return facultyCatalog.get().byId(id).orElseThrow(() -> {
+            logger.error("Факультет с ID {} не найден", id);
+            return new EntityNotFoundException("Факультет не найден");
+        });
     }
 
     @Transactional
     public void removeFaculty(Long id) {
         logger.info("Вызван метод удаления факультета по ID: {}", id);
-        if (!facultyRepository.existsById(id)) {
+        Faculty faculty = facultyRepository.findById(id).orElseThrow(() -> {
             logger.warn("Попытка удаления несуществующего факультета с ID: {}", id);
-            throw new EntityNotFoundException("Факультет не найден");
-        }
-        facultyRepository.deleteById(id);
+            return new EntityNotFoundException("Факультет не найден");
+        });
+        facultyRepository.delete(faculty);
         logger.debug("Факультет с ID {} удален", id);
     }
 
     @Transactional
-    public Faculty updateFaculty(Long id, Faculty faculty) {
+    public FacultyDto updateFaculty(Long id, Faculty faculty) {
         logger.info("Вызван метод обновления факультета по ID: {}", id);
-        if (!facultyRepository.existsById(id)) {
+        // Загруженный факультет остается в контексте персистентности, и merge в save() не делает второй SELECT
+        if (facultyRepository.findById(id).isEmpty()) {
             logger.warn("Попытка обновления несуществующего факультета с ID: {}", id);
             throw new EntityNotFoundException("Факультет не найден");
         }
         faculty.setId(id);
         Faculty updatedFaculty = facultyRepository.save(faculty);
         logger.debug("Обновлен факультет: {}", updatedFaculty);
-        return updatedFaculty;
+        return FacultyDto.from(updatedFaculty);
     }
 
-    public List<Faculty> findAllFacultiesByColor(String color) {
+    public List<FacultyDto> findAllFacultiesByColor(String color) {
         logger.info("Вызван метод поиска факультетов по цвету: {}", color);
-        List<Faculty> faculties = facultyRepository.findByColor(color);
+        List<FacultyDto> faculties = facultyCatalog.get().byColor(color);
         logger.debug("Найдено {} факультетов цвета {}", faculties.size(), color);
         return faculties;
     }
 
-    public List<Faculty> searchFaculties(String query) {
+    public List<FacultyDto> searchFaculties(String query) {
         logger.info("Вызван метод поиска факультетов по запросу: {}", query);
-        List<Faculty> faculties = facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(query, query);
+        List<FacultyDto> faculties = facultyCatalog.get().search(query);
         logger.debug("Найдено {} факультетов по запросу '{}'", faculties.size(), query);
         return faculties;
     }
 
-    public List<Student> getFacultyStudents(Long id) {
+    public List<StudentDto> getFacultyStudents(Long id) {
         logger.info("Вызван метод получения студентов факультета по ID: {}", id);
-        Faculty faculty = getFaculty(id);
-        List<Student> students = faculty.getStudents();
-        logger.debug("Найдено {} студентов на факультете {}", students.size(), faculty.getName());
+        StudentColumnStore store = columnStore.getIfAvailable();
+        if (store != null && store.isReady()) {
+            if (!store.containsFaculty(id)) {
+                logger.error("Факультет с ID {} не найден", id);
+                throw new EntityNotFoundException("Факультет не найден");
+            }
+            List<StudentDto> students = store.find(StudentFilter.faculty(id));
+            logger.debug("Найдено {} студентов на факультете с ID {}", students.size(), id);
+            return students;
+        }
+        FacultyDto faculty = getFaculty(id);
+        List<StudentDto> students = studentRepository.findDtosByFacultyId(id);
+        logger.debug("Найдено {} студентов на факультете {}", students.size(), faculty.name());
         return students;
     }
 
     // Шаг 3: Самое длинное название факультета
     public String getLongestFacultyName() {
         logger.info("Поиск самого длинного названия факультета");
-        return facultyRepository.findAll().stream()
-                .map(Faculty::getName)
-                .max(Comparator.comparingInt(String::length))
+        return facultyCatalog.get().longestName()
                 .orElseThrow(() -> {
                     logger.warn("Факультеты не найдены");
                     return new RuntimeException("No faculties found");
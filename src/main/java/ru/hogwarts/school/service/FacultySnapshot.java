@@ -0,0 +1,118 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.entities.Faculty;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Неизменяемый снимок таблицы факультетов с индексами по ID, названию и цвету
+ * в нижнем регистре. Изменение создает новый снимок (copy-on-write); готовые списки
+ * отдаются без копирования.
+ */
+public final class FacultySnapshot {
+    static final FacultySnapshot EMPTY = new FacultySnapshot(Map.of());
+
+    private final Map<Long, FacultyDto> byId;
+    private final Map<String, List<FacultyDto>> byName;
+    private final Map<String, List<FacultyDto>> byColor;
+    private final String longestName;
+
+    private FacultySnapshot(Map<Long, FacultyDto> byId) {
+        this.byId = byId;
+        this.byName = index(byId.values(), FacultyDto::name);
+        this.byColor = index(byId.values(), FacultyDto::color);
+        this.longestName = byId.values().stream()
+                .map(FacultyDto::name)
+                .filter(Objects::nonNull)
+                .max(Comparator.comparingInt(String::length))
+                .orElse(null);
+    }
+
+    static FacultySnapshot of(Collection<Faculty> faculties) {
+        Map<Long, FacultyDto> byId = new HashMap<>();
+        faculties.forEach(faculty -> byId.put(faculty.getId(), FacultyDto.from(faculty)));
+        return new FacultySnapshot(Map.copyOf(byId));
+    }
+
+    FacultySnapshot with(FacultyDto faculty) {
+        Map<Long, FacultyDto> byId = new HashMap<>(this.byId);
+        byId.put(faculty.id(), faculty);
+        return new FacultySnapshot(Map.copyOf(byId));
+    }
+
+    FacultySnapshot without(Long id) {
+        if (!byId.containsKey(id)) {
+            return this;
+        }
+        Map<Long, FacultyDto> byId = new HashMap<>(this.byId);
+        byId.remove(id);
+        return new FacultySnapshot(Map.copyOf(byId));
+    }
+
+    public Optional<FacultyDto> byId(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(byId.get(id));
+    }
+
+    /**
+     * Факультеты с точно таким цветом, как в запросе к базе {@code color = ?}.
+     */
+    public List<FacultyDto> byColor(String color) {
+        if (color == null) {
+            return List.of();
+        }
+        List<FacultyDto> candidates = byColor.getOrDefault(lower(color), List.of());
+        for (FacultyDto faculty : candidates) {
+            if (!color.equals(faculty.color())) {
+                return candidates.stream().filter(candidate -> color.equals(candidate.color())).toList();
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Факультеты, у которых название или цвет совпадает с запросом без учета регистра.
+     */
+    public List<FacultyDto> search(String query) {
+        if (query == null) {
+            return List.of();
+        }
+        List<FacultyDto> byName = this.byName.getOrDefault(lower(query), List.of());
+        List<FacultyDto> byColor = this.byColor.getOrDefault(lower(query), List.of());
+        if (byColor.isEmpty()) {
+            return byName;
+        }
+        if (byName.isEmpty()) {
+            return byColor;
+        }
+        return Stream.concat(byName.stream(), byColor.stream())
+                .distinct()
+                .sorted(Comparator.comparing(FacultyDto::id))
+                .toList();
+    }
+
+    public Optional<String> longestName() {
+        return Optional.ofNullable(longestName);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    private static Map<String, List<FacultyDto>> index(Collection<FacultyDto> faculties,
+                                                    Function<FacultyDto, String> key) {
+        return faculties.stream()
+                .filter(faculty -> key.apply(faculty) != null)
+                .sorted(Comparator.comparing(FacultyDto::id))
+                .collect(Collectors.collectingAndThen(
+                        Collectors.groupingBy(faculty -> lower(key.apply(faculty)), Collectors.toUnmodifiableList()),
+                        Map::copyOf));
+    }
+
+    private static String lower(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,149 @@
+package ru.hogwarts.school.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Определение формата изображения по сигнатуре (magic bytes) и чтение его размеров
+ * из заголовка — без декодирования пикселей. Из потока потребляются только байты
+ * до размеров изображения; для JPEG сегменты APPn (EXIF, ICC, MPF) пропускаются по
+ * объявленной длине, без буферизации.
+ */
+public final class ImageHeaderReader {
+
+    // Самая длинная из сигнатур поддерживаемых форматов (PNG)
+    public static final int SIGNATURE_SIZE = 8;
+
+    private ImageHeaderReader() {
+    }
+
+    /**
+     * Проверяет сигнатуру по первым байтам файла; неизвестный формат отклоняется.
+     */
+    public static void checkSignature(byte[] signature, int length) {
+        if (ImageFormat.detect(signature, length) == null) {
+            throw new IllegalArgumentException("Unsupported or invalid image format");
+        }
+    }
+
+    public static ImageHeader read(InputStream inputStream) throws IOException {
+        InputStream in = inputStream.markSupported() ? inputStream : new BufferedInputStream(inputStream);
+        in.mark(SIGNATURE_SIZE);
+        byte[] signature = in.readNBytes(SIGNATURE_SIZE);
+        in.reset();
+        ImageFormat format = ImageFormat.detect(signature, signature.length);
+        if (format == null) {
+            throw new IllegalArgumentException("Unsupported or invalid image format");
+        }
+        int[] size = format == ImageFormat.JPEG ? readJpegSize(in) : readSize(in, format);
+        if (size[0] <= 0 || size[1] <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + size[0] + "x" + size[1]);
+        }
+        return new ImageHeader(format.mediaType, format.extension, size[0], size[1]);
+    }
+
+    // Размеры PNG, GIF и BMP лежат в первых десятках байтов; ImageIO читает только их
+    private static int[] readSize(InputStream in, ImageFormat format) throws IOException {
+        try (ImageInputStream iis = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(format.formatName);
+            if (!readers.hasNext()) {
+                throw new IllegalArgumentException("No image reader for format: " + format.formatName);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read image header: " + e.getMessage(), e);
+        }
+    }
+
+    // Сегменты JPEG проходятся по длинам до маркера SOFn, в котором записаны размеры кадра
+    private static int[] readJpegSize(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        try {
+            if (data.readUnsignedShort() != 0xFFD8) {
+                throw new IllegalArgumentException("Invalid JPEG: missing SOI marker");
+            }
+            while (true) {
+                if (data.readUnsignedByte() != 0xFF) {
+                    throw new IllegalArgumentException("Invalid JPEG: marker expected");
+                }
+                int marker = data.readUnsignedByte();
+                while (marker == 0xFF) {
+                    marker = data.readUnsignedByte();
+                }
+                if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                    continue;
+                }
+                if (marker == 0xD9 || marker == 0xDA) {
+                    throw new IllegalArgumentException("Invalid JPEG: no frame header before image data");
+                }
+                int length = data.readUnsignedShort();
+                if (length < 2) {
+                    throw new IllegalArgumentException("Invalid JPEG: bad segment length " + length);
+                }
+                if (isStartOfFrame(marker)) {
+                    data.readUnsignedByte();
+                    int height = data.readUnsignedShort();
+                    int width = data.readUnsignedShort();
+                    return new int[]{width, height};
+                }
+                data.skipNBytes(length - 2);
+            }
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Cannot read image header: unexpected end of JPEG", e);
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    public record ImageHeader(String mediaType, String extension, int width, int height) {
+        public long pixels() {
+            return (long) width * height;
+        }
+    }
+
+    private enum ImageFormat {
+        JPEG("jpeg", "image/jpeg", "jpg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+        PNG("png", "image/png", "png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}),
+        GIF("gif", "image/gif", "gif", new byte[]{'G', 'I', 'F', '8'}),
+        BMP("bmp", "image/bmp", "bmp", new byte[]{'B', 'M'});
+
+        private final String formatName;
+        private final String mediaType;
+        private final String extension;
+        private final byte[] magic;
+
+        ImageFormat(String formatName, String mediaType, String extension, byte[] magic) {
+            this.formatName = formatName;
+            this.mediaType = mediaType;
+            this.extension = extension;
+            this.magic = magic;
+        }
+
+        static ImageFormat detect(byte[] header, int length) {
+            for (ImageFormat format : values()) {
+                if (length >= format.magic.length
+                        && Arrays.equals(header, 0, format.magic.length, format.magic, 0, format.magic.length)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+}
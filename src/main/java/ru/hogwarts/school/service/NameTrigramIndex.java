@@ -0,0 +1,155 @@
+package ru.hogwarts.school.service;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Инвертированный индекс триграмм по словарю имен {@link StudentColumnStore}.
+ * <p>
+ * Триграммы и сходство считаются по правилам pg_trgm: имя приводится к нижнему регистру
+ * и делится на слова из букв и цифр, каждое слово дополняется двумя пробелами слева и одним
+ * справа; сходство — доля общих триграмм от объединения. Поэтому результаты совпадают
+ * с {@code similarity()} в PostgreSQL, но поиск идет по спискам кодов в памяти, а не по GIN.
+ * Индекс только растет вместе со словарем, поэтому списки кодов отсортированы по возрастанию;
+ * устаревшие коды отсекает вызывающий.
+ */
+final class NameTrigramIndex {
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private short[] trigramCounts = new short[16];
+    private int size;
+
+    void add(int code, String name) {
+        long[] trigrams = trigrams(name);
+        if (code >= trigramCounts.length) {
+            trigramCounts = Arrays.copyOf(trigramCounts, Math.max(code + 1, trigramCounts.length * 2));
+        }
+        trigramCounts[code] = (short) Math.min(trigrams.length, Short.MAX_VALUE);
+        size = Math.max(size, code + 1);
+        for (long trigram : trigrams) {
+            postings.computeIfAbsent(trigram, key -> new IntList()).add(code);
+        }
+    }
+
+    /**
+     * Коды имен со сходством не ниже threshold, самые похожие первыми.
+     */
+    List<Match> search(String query, double threshold, int limit, IntPredicate accept) {
+        long[] queryTrigrams = trigrams(query);
+        if (queryTrigrams.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        // Сходство не больше common / q, значит у подходящего имени не меньше minCommon общих
+        // триграмм и хотя бы одна из q - minCommon + 1 самых редких. Кандидаты набираются только
+        // из этих списков, а частые списки лишь досчитывают найденных кандидатов.
+        IntList[] lists = new IntList[queryTrigrams.length];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.getOrDefault(queryTrigrams[i], IntList.EMPTY);
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+        int minCommon = Math.max(1, (int) Math.ceil(threshold * queryTrigrams.length - 1e-9));
+        int candidateLists = queryTrigrams.length - minCommon + 1;
+
+        short[] shared = new short[size];
+        IntList touched = new IntList();
+        for (int l = 0; l < candidateLists; l++) {
+            IntList codes = lists[l];
+            for (int i = 0; i < codes.size; i++) {
+                int code = codes.values[i];
+                if (shared[code]++ == 0) {
+                    touched.add(code);
+                }
+            }
+        }
+        for (int l = candidateLists; l < lists.length; l++) {
+            IntList codes = lists[l];
+            // Списки отсортированы по коду: при малом числе кандидатов дешевле двоичный поиск
+            if ((long) touched.size * (32 - Integer.numberOfLeadingZeros(codes.size)) < codes.size) {
+                for (int i = 0; i < touched.size; i++) {
+                    if (Arrays.binarySearch(codes.values, 0, codes.size, touched.values[i]) >= 0) {
+                        shared[touched.values[i]]++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < codes.size; i++) {
+                    if (shared[codes.values[i]] > 0) {
+                        shared[codes.values[i]]++;
+                    }
+                }
+            }
+        }
+        // Куча на limit элементов: наверху худшее из лучших совпадений
+        PriorityQueue<Match> best = new PriorityQueue<>(Comparator.comparingDouble(Match::similarity)
+                .thenComparing(Match::code, Comparator.reverseOrder()));
+        for (int i = 0; i < touched.size; i++) {
+            int code = touched.values[i];
+            int common = shared[code];
+            double similarity = (double) common / (queryTrigrams.length + trigramCounts[code] - common);
+            if (similarity < threshold || best.size() == limit && similarity <= best.peek().similarity()) {
+                continue;
+            }
+            if (!accept.test(code)) {
+                continue;
+            }
+            best.add(new Match(code, similarity));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(Comparator.comparingDouble(Match::similarity).reversed().thenComparingInt(Match::code));
+        return matches;
+    }
+
+    static long[] trigrams(String value) {
+        String text = value.toLowerCase(Locale.ROOT);
+        // На слово длины k приходится k + 1 триграмма, поэтому text.length() * 2 + 2 хватает с запасом
+        long[] trigrams = new long[text.length() * 2 + 2];
+        int count = 0;
+        int i = 0;
+        while (i < text.length()) {
+            while (i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                // Слово дополняется двумя пробелами слева и одним справа
+                char a = ' ';
+                char b = ' ';
+                for (int j = start; j <= i; j++) {
+                    char c = j < i ? text.charAt(j) : ' ';
+                    trigrams[count++] = (long) a << 32 | (long) b << 16 | c;
+                    a = b;
+                    b = c;
+                }
+            }
+        }
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for (int j = 0; j < count; j++) {
+            if (distinct == 0 || trigrams[j] != trigrams[distinct - 1]) {
+                trigrams[distinct++] = trigrams[j];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    record Match(int code, double similarity) {
+    }
+
+    private static final class IntList {
+        static final IntList EMPTY = new IntList();
+
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
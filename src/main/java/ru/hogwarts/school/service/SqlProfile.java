@@ -0,0 +1,67 @@
+package ru.hogwarts.school.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Счетчики SQL одного HTTP-запроса: число выполненных команд JDBC, суммарное время
+ * в драйвере и повторы одинаковых команд (признак N+1). Профиль привязан к потоку
+ * запроса: его открывает фильтр, а пополняет {@link SqlProfilingDataSourcePostProcessor}.
+ * Работа в других потоках (асинхронная выгрузка, фоновые задачи) в профиль не попадает.
+ */
+public final class SqlProfile {
+    private static final ThreadLocal<SqlProfile> CURRENT = new ThreadLocal<>();
+    // Ограничение числа различных текстов SQL, чтобы пакетные операции не раздували профиль
+    private static final int MAX_DISTINCT_STATEMENTS = 256;
+
+    private final Map<String, Integer> executions = new HashMap<>();
+    private int statements;
+    private long jdbcNanos;
+    private boolean reported;
+
+    private SqlProfile() {
+    }
+
+    public static SqlProfile start() {
+        SqlProfile profile = new SqlProfile();
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    public static SqlProfile current() {
+        return CURRENT.get();
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    public void record(String sql, long nanos) {
+        statements++;
+        jdbcNanos += nanos;
+        if (executions.size() < MAX_DISTINCT_STATEMENTS || executions.containsKey(sql)) {
+            executions.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    public int statements() {
+        return statements;
+    }
+
+    public long jdbcNanos() {
+        return jdbcNanos;
+    }
+
+    /** Команда, выполненная больше всего раз, и число ее выполнений */
+    public Optional<Map.Entry<String, Integer>> mostRepeated() {
+        return executions.entrySet().stream().max(Map.Entry.comparingByValue());
+    }
+
+    /** Заголовки и проверка бюджета выполняются один раз: в ResponseBodyAdvice или в фильтре */
+    public boolean markReported() {
+        boolean first = !reported;
+        reported = true;
+        return first;
+    }
+}
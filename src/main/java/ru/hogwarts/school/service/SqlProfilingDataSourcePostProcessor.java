@@ -0,0 +1,63 @@
+package ru.hogwarts.school.service;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Оборачивает пул соединений в datasource-proxy: каждая команда JDBC засчитывается
+ * в {@link SqlProfile} текущего запроса и пишется в лог {@code ru.hogwarts.school.sql}
+ * на уровне TRACE (вместо spring.jpa.show-sql, который печатал SQL во всех профилях).
+ */
+@Component
+@ConditionalOnProperty(name = "sql.profiler.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlProfilingDataSourcePostProcessor implements BeanPostProcessor {
+    private static final Logger sqlLogger = LoggerFactory.getLogger("ru.hogwarts.school.sql");
+    private static final String START_NANOS = "sqlProfile.startNanos";
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+            return ProxyDataSourceBuilder.create(beanName, dataSource)
+                    .listener(new ProfilingListener())
+                    .build();
+        }
+        return bean;
+    }
+
+    private static final class ProfilingListener implements QueryExecutionListener {
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            execInfo.addCustomValue(START_NANOS, System.nanoTime());
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            Long start = execInfo.getCustomValue(START_NANOS, Long.class);
+            long nanos = start == null ? 0 : System.nanoTime() - start;
+            String sql = queryInfoList.size() == 1
+                    ? queryInfoList.get(0).getQuery()
+                    : queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+            if (sqlLogger.isTraceEnabled()) {
+                sqlLogger.trace("{} мкс{}: {}", nanos / 1000,
+                        execInfo.isBatch() ? ", пакет из " + execInfo.getBatchSize() : "", sql);
+            }
+            SqlProfile profile = SqlProfile.current();
+            if (profile != null) {
+                profile.record(sql, nanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.dto.StudentBulkItem;
+import ru.hogwarts.school.dto.StudentBulkReport;
+import ru.hogwarts.school.dto.StudentBulkResult;
+import ru.hogwarts.school.dto.StudentBulkResult.Status;
+
+import java.sql.Connection;
+import java.util.*;
+
+/**
+ * Пакетное создание и обновление студентов с upsert по уникальному имени.
+ * <p>
+ * Идентификаторы новых строк берутся блоками из student_seq по той же схеме pooled-lo,
+ * что и у Hibernate, поэтому выдача ID согласована с обычным сохранением через JPA.
+ * Каждый пакет пишется одной командой {@code INSERT ... SELECT FROM unnest(...)
+ * ON CONFLICT (name) DO UPDATE ... RETURNING} в общей транзакции; исход строки и ее ID
+ * берутся из RETURNING, поэтому параллельная вставка того же имени дает UPDATED.
+ */
+@Service
+public class StudentBulkService {
+    private static final Logger logger = LoggerFactory.getLogger(StudentBulkService.class);
+    private static final int BATCH_SIZE = 1000;
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+    // Должен совпадать с allocationSize у Student
+    private static final int ID_ALLOCATION_SIZE = 50;
+    // Ограничения таблицы student
+    private static final int MIN_AGE = 16;
+    private static final int MAX_NAME_LENGTH = 255;
+
+    // Новым по снимку команды строкам выдаются ID из блоков последовательности, существующим
+    // передается их id; строка, вставленная параллельно, уходит в DO UPDATE. Вставленные
+    // версии отличаются по xmax = 0
+    private static final String UPSERT_SQL = """
+            WITH input AS (
+                SELECT * FROM unnest(?::text[], ?::int[], ?::bigint[]) WITH ORDINALITY AS t(name, age, faculty_id, n)),
+                 fresh AS (
+                     SELECT i.n, row_number() OVER (ORDER BY i.n) - 1 AS k
+                     FROM input i
+                     WHERE NOT EXISTS (SELECT 1 FROM student s WHERE s.name = i.name)),
+                 blocks AS (
+                     SELECT b, nextval('student_seq') AS lo
+                     FROM generate_series(0, (SELECT (count(*) + %1$d - 1) / %1$d - 1 FROM fresh)) b)
+            INSERT INTO student (id, name, age, faculty_id)
+            SELECT COALESCE(s.id, bl.lo + fr.k %% %1$d), i.name, i.age, i.faculty_id
+            FROM input i
+                     LEFT JOIN student s ON s.name = i.name
+                     LEFT JOIN fresh fr ON fr.n = i.n
+                     LEFT JOIN blocks bl ON bl.b = fr.k / %1$d
+            ON CONFLICT (name) DO UPDATE SET age = EXCLUDED.age, faculty_id = EXCLUDED.faculty_id
+            RETURNING id, name, (xmax = 0) AS inserted
+            """.formatted(ID_ALLOCATION_SIZE);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${student.bulk.max-size:50000}")
+    private int maxSize;
+
+    public StudentBulkService(JdbcTemplate jdbcTemplate,
+                              NamedParameterJdbcTemplate namedJdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public StudentBulkReport upsertStudents(List<StudentBulkItem> items) {
+        logger.info("Вызван метод пакетной записи студентов: {} строк", items.size());
+        if (items.size() > maxSize) {
+            logger.warn("Превышен размер пакета студентов: {}", items.size());
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "At most " + maxSize + " students per request");
+        }
+        long start = System.nanoTime();
+        Row[] rows = new Row[items.size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Row(i, items.get(i));
+            rows[i].validate();
+        }
+        rejectUnknownFaculties(rows);
+        List<Row> accepted = selectLatestPerName(rows);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (List<Row> batch : chunks(accepted, BATCH_SIZE)) {
+                upsert(batch);
+            }
+            eventPublisher.publishEvent(new StudentsBulkChangedEvent("bulk"));
+        });
+
+        List<StudentBulkResult> results = Arrays.stream(rows).map(Row::toResult).toList();
+        int created = count(results, Status.CREATED);
+        int updated = count(results, Status.UPDATED);
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Пакетная запись студентов: создано {}, обновлено {} из {} за {} мс",
+                created, updated, rows.length, durationMs);
+        return new StudentBulkReport(rows.length, created, updated, rows.length - created - updated, durationMs, results);
+    }
+
+    private void rejectUnknownFaculties(Row[] rows) {
+        Set<Long> facultyIds = new HashSet<>();
+        for (Row row : rows) {
+            if (row.status == null && row.item.facultyId() != null) {
+                facultyIds.add(row.item.facultyId());
+            }
+        }
+        Set<Long> existing = new HashSet<>();
+        for (List<Long> chunk : chunks(facultyIds, LOOKUP_CHUNK_SIZE)) {
+            existing.addAll(namedJdbcTemplate.queryForList("SELECT id FROM faculty WHERE id IN (:ids)",
+                    Map.of("ids", chunk), Long.class));
+        }
+        for (Row row : rows) {
+            if (row.status == null && row.item.facultyId() != null && !existing.contains(row.item.facultyId())) {
+                row.result(Status.REJECTED, "Faculty not found: " + row.item.facultyId());
+            }
+        }
+    }
+
+    // Повтор имени в одном запросе: применяется последняя строка
+    private static List<Row> selectLatestPerName(Row[] rows) {
+        Map<String, Row> latest = new LinkedHashMap<>();
+        for (Row row : rows) {
+            if (row.status != null) {
+                continue;
+            }
+            Row previous = latest.put(row.item.name(), row);
+            if (previous != null) {
+                previous.result(Status.SKIPPED, "Superseded by row " + row.index);
+            }
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    // Имена в пакете уникальны (selectLatestPerName), по ним строки RETURNING сопоставляются с запросом
+    private void upsert(List<Row> batch) {
+        Map<String, Row> byName = new HashMap<>();
+        batch.forEach(row -> byName.put(row.item.name(), row));
+        jdbcTemplate.query(UPSERT_SQL, ps -> {
+            Connection connection = ps.getConnection();
+            ps.setArray(1, connection.createArrayOf("text",
+                    batch.stream().map(row -> row.item.name()).toArray()));
+            ps.setArray(2, connection.createArrayOf("int4",
+                    batch.stream().map(row -> row.item.age()).toArray()));
+            ps.setArray(3, connection.createArrayOf("int8",
+                    batch.stream().map(row -> row.item.facultyId()).toArray()));
+        }, rs -> {
+            Row row = byName.get(rs.getString("name"));
+            row.id = rs.getLong("id");
+            row.result(rs.getBoolean("inserted") ? Status.CREATED : Status.UPDATED, null);
+        });
+    }
+
+    private static int count(List<StudentBulkResult> results, Status status) {
+        return (int) results.stream().filter(result -> result.status() == status).count();
+    }
+
+    private static <T> List<List<T>> chunks(Collection<T> values, int size) {
+        List<T> list = new ArrayList<>(values);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(list.subList(from, Math.min(from + size, list.size())));
+        }
+        return chunks;
+    }
+
+    private static final class Row {
+        private final int index;
+        private final StudentBulkItem item;
+        private Long id;
+        private Status status;
+        private String message;
+
+        private Row(int index, StudentBulkItem item) {
+            this.index = index;
+            this.item = item;
+        }
+
+        private void validate() {
+            if (item == null || item.name() == null || item.name().isBlank()) {
+                result(Status.REJECTED, "Student name cannot be empty");
+            } else if (item.name().length() > MAX_NAME_LENGTH) {
+                result(Status.REJECTED, "Student name is longer than " + MAX_NAME_LENGTH);
+            } else if (item.age() == null || item.age() < MIN_AGE) {
+                result(Status.REJECTED, "Age must be at least " + MIN_AGE);
+            }
+        }
+
+        private void result(Status status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        private StudentBulkResult toResult() {
+            return new StudentBulkResult(index, item == null ? null : item.name(), id, status, message);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.service;
+
+/**
+ * Зафиксированное изменение студента. before равен null для созданного студента,
+ * after — для удаленного. version — версия строки после изменения: события могут прийти
+ * не в порядке коммитов, и у более позднего изменения строки версия больше.
+ * Для удаления версия не задается (0): удаление окончательно.
+ */
+public record StudentChangedEvent(Long id, StudentState before, StudentState after, long version) {
+
+    public record StudentState(String name, int age, Long facultyId) {
+    }
+}
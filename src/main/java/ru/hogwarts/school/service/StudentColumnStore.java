@@ -0,0 +1,547 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.dto.StudentSearchHit;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Колоночная модель чтения студентов в памяти процесса.
+ * <p>
+ * Студенты хранятся плотными примитивными массивами (id, возраст, id факультета, код имени
+ * в словаре), поэтому отбор по возрасту или факультету — это линейный проход по int/long
+ * массивам без обращения к базе. Начиная с {@link #PARALLEL_THRESHOLD} строк проход идет
+ * параллельно в общем fork-join пуле. Для нечеткого поиска по имени словарь имен
+ * проиндексирован триграммами ({@link NameTrigramIndex}).
+ * <p>
+ * Модель строится при старте приложения и поддерживается в актуальном состоянии событиями
+ * {@link StudentChangedEvent} и {@link FacultyChangedEvent}. События могут прийти не в порядке
+ * коммитов, поэтому у каждой строки хранится ее версия из базы и более старые события
+ * отбрасываются; удаление окончательно. После массовых изменений в обход JPA
+ * ({@link StudentsBulkChangedEvent}) модель перестраивается целиком; события, пришедшие
+ * во время перестроения, применяются повторно к новой копии с той же проверкой версий.
+ * Кроме того, модель периодически перестраивается заново, что заодно сжимает словарь имен
+ * и триграммный индекс, в которых остаются имена удаленных и переименованных студентов.
+ */
+@Component
+@ConditionalOnProperty(name = "student.column-store.enabled", havingValue = "true")
+public class StudentColumnStore {
+    private static final Logger logger = LoggerFactory.getLogger(StudentColumnStore.class);
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final int FETCH_SIZE = 10_000;
+    private static final long NO_FACULTY = 0;
+    // Порог по умолчанию pg_trgm.similarity_threshold
+    static final double SIMILARITY_THRESHOLD = 0.3;
+    // Перестроение ради сжатия словаря, когда неиспользуемых имен больше, чем живых, но не меньше этого числа
+    private static final int MIN_DEAD_NAMES = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildLock = new Object();
+
+    // Все поля ниже защищены lock
+    private Columns columns = new Columns(16);
+    private Map<Long, FacultyDto> faculties = new HashMap<>();
+    private Map<Long, Long> facultyVersions = new HashMap<>();
+    private final Tombstones deletedStudents = new Tombstones();
+    private final Tombstones deletedFaculties = new Tombstones();
+    private List<Object> pendingEvents;
+
+    private volatile boolean ready;
+    private volatile long lastRebuildNanos;
+
+    @Value("${student.column-store.rebuild-interval:PT1H}")
+    private Duration rebuildInterval;
+
+    public StudentColumnStore(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        // Перестроение вызывается и из afterCommit чужой транзакции, к которой нельзя присоединяться
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Модель построена и может отвечать вместо базы.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentsBulkChanged(StudentsBulkChangedEvent event) {
+        logger.info("Перестроение колоночной модели после массового изменения: {}", event.source());
+        rebuild();
+    }
+
+    @EventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        write(() -> apply(event));
+    }
+
+    @EventListener
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        write(() -> apply(event));
+    }
+
+    /**
+     * Перестраивает модель раз в {@code student.column-store.rebuild-interval} или раньше,
+     * если словарь имен заметно больше числа студентов.
+     */
+    @Scheduled(fixedDelayString = "${student.column-store.maintenance-interval:PT1M}",
+            initialDelayString = "${student.column-store.maintenance-interval:PT1M}")
+    public void maintain() {
+        if (!ready) {
+            return;
+        }
+        int deadNames = read(() -> columns.dictionary.size() - columns.size);
+        if (deadNames >= MIN_DEAD_NAMES && deadNames > size()) {
+            logger.info("Перестроение колоночной модели для сжатия словаря: {} неиспользуемых имен", deadNames);
+            rebuild();
+        } else if (System.nanoTime() - lastRebuildNanos >= rebuildInterval.toNanos()) {
+            logger.debug("Плановое перестроение колоночной модели");
+            rebuild();
+        }
+    }
+
+    /**
+     * Полностью загружает модель из базы. Чтение идет без блокировки; изменения, пришедшие
+     * за это время, копятся и накладываются на новую копию перед подменой.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            write(() -> pendingEvents = new ArrayList<>());
+            try {
+                Columns freshColumns = new Columns(Math.max(16, size()));
+                Map<Long, FacultyDto> freshFaculties = new HashMap<>();
+                Map<Long, Long> freshFacultyVersions = new HashMap<>();
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.query("SELECT id, name, color, version FROM faculty", (RowCallbackHandler) rs -> {
+                        freshFaculties.put(rs.getLong(1), new FacultyDto(rs.getLong(1), rs.getString(2), rs.getString(3)));
+                        freshFacultyVersions.put(rs.getLong(1), rs.getLong(4));
+                    });
+                    // getLong возвращает 0 для NULL, что и означает «без факультета»
+                    jdbcTemplate.query("SELECT id, name, age, faculty_id, version FROM student", (RowCallbackHandler) rs ->
+                            freshColumns.upsert(rs.getLong(1), rs.getString(2), rs.getInt(3), rs.getLong(4), rs.getLong(5)));
+                });
+                write(() -> {
+                    List<Object> pending = pendingEvents;
+                    pendingEvents = null;
+                    columns = freshColumns;
+                    faculties = freshFaculties;
+                    facultyVersions = freshFacultyVersions;
+                    // Строка есть в снимке — значит, отметка об удалении относится к более раннему id
+                    // или удаление прошло после снимка и придет повторно из pending
+                    deletedStudents.rotate(id -> freshColumns.rowById.get(id) >= 0);
+                    deletedFaculties.rotate(freshFaculties::containsKey);
+                    pending.forEach(this::apply);
+                });
+                lastRebuildNanos = System.nanoTime();
+                ready = true;
+                logger.info("Колоночная модель построена: {} студентов, {} факультетов за {} мс",
+                        freshColumns.size, freshFaculties.size(), (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                write(() -> pendingEvents = null);
+            }
+        }
+    }
+
+    public int size() {
+        return read(() -> columns.size);
+    }
+
+    public boolean containsFaculty(long facultyId) {
+        return read(() -> faculties.containsKey(facultyId));
+    }
+
+    /**
+     * Студенты, подходящие под условие, в порядке возрастания ID.
+     */
+    public List<StudentDto> find(StudentFilter filter) {
+        return read(() -> {
+            Columns c = columns;
+            // Сортируются сами id (примитивный long[]), строки находятся обратно через индекс
+            long[] order = rows(c, filter).mapToLong(row -> c.ids[row]).toArray();
+            if (order.length >= PARALLEL_THRESHOLD) {
+                Arrays.parallelSort(order);
+            } else {
+                Arrays.sort(order);
+            }
+            List<StudentDto> students = new ArrayList<>(order.length);
+            for (long id : order) {
+                students.add(c.materialize(c.rowById.get(id), faculties));
+            }
+            return students;
+        });
+    }
+
+    /**
+     * Студенты с именами, похожими на запрос (триграммное сходство pg_trgm не ниже
+     * {@link #SIMILARITY_THRESHOLD}), самые похожие первыми. Студенты из excludedIds пропускаются.
+     */
+    public List<StudentSearchHit> findSimilarNames(String query, Set<Long> excludedIds, int limit) {
+        return read(() -> {
+            Columns c = columns;
+            IntPredicate live = code -> c.rowByCode[code] >= 0 && !excludedIds.contains(c.ids[c.rowByCode[code]]);
+            List<StudentSearchHit> hits = new ArrayList<>();
+            for (NameTrigramIndex.Match match : c.nameIndex.search(query, SIMILARITY_THRESHOLD, limit, live)) {
+                int row = c.rowByCode[match.code()];
+                hits.add(new StudentSearchHit(c.ids[row], c.dictionary.get(match.code()), c.ages[row], match.similarity()));
+            }
+            return hits;
+        });
+    }
+
+    public long count(StudentFilter filter) {
+        return read(() -> rows(columns, filter).count());
+    }
+
+    public OptionalDouble averageAge(StudentFilter filter) {
+        return read(() -> {
+            Columns c = columns;
+            return rows(c, filter).map(row -> c.ages[row]).average();
+        });
+    }
+
+    /**
+     * Число подходящих студентов по факультетам; студенты без факультета не учитываются.
+     */
+    public Map<Long, Long> countByFaculty(StudentFilter filter) {
+        return read(() -> {
+            Columns c = columns;
+            return rows(c, filter)
+                    .filter(row -> c.facultyIds[row] != NO_FACULTY)
+                    .boxed()
+                    .collect(Collectors.groupingBy(row -> c.facultyIds[row], Collectors.counting()));
+        });
+    }
+
+    private static IntStream rows(Columns c, StudentFilter filter) {
+        IntStream rows = IntStream.range(0, c.size);
+        if (c.size >= PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        return rows.filter(predicate(c, filter));
+    }
+
+    private static IntPredicate predicate(Columns c, StudentFilter filter) {
+        int minAge = filter.minAge() == null ? Integer.MIN_VALUE : filter.minAge();
+        int maxAge = filter.maxAge() == null ? Integer.MAX_VALUE : filter.maxAge();
+        IntPredicate predicate = row -> c.ages[row] >= minAge && c.ages[row] <= maxAge;
+        if (filter.facultyId() != null) {
+            long facultyId = filter.facultyId();
+            predicate = predicate.and(row -> c.facultyIds[row] == facultyId);
+        }
+        if (filter.namePrefix() != null) {
+            // Префикс проверяется один раз на слово словаря, а не на каждую строку
+            String prefix = filter.namePrefix();
+            BitSet matching = new BitSet(c.dictionary.size());
+            for (int code = 0; code < c.dictionary.size(); code++) {
+                if (c.dictionary.get(code).regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    matching.set(code);
+                }
+            }
+            predicate = predicate.and(row -> matching.get(c.nameCodes[row]));
+        }
+        return predicate;
+    }
+
+    private void apply(Object event) {
+        if (pendingEvents != null) {
+            pendingEvents.add(event);
+        }
+        if (event instanceof StudentChangedEvent changed) {
+            StudentChangedEvent.StudentState after = changed.after();
+            if (after == null) {
+                columns.remove(changed.id());
+                deletedStudents.add(changed.id());
+            } else if (!deletedStudents.contains(changed.id())) {
+                columns.upsert(changed.id(), after.name(), after.age(),
+                        after.facultyId() == null ? NO_FACULTY : after.facultyId(), changed.version());
+            }
+        } else if (event instanceof FacultyChangedEvent changed) {
+            FacultyChangedEvent.FacultyState after = changed.after();
+            if (after == null) {
+                // В базе student.faculty_id обнуляется каскадом ON DELETE SET NULL
+                faculties.remove(changed.id());
+                facultyVersions.remove(changed.id());
+                deletedFaculties.add(changed.id());
+                columns.clearFaculty(changed.id());
+            } else if (!deletedFaculties.contains(changed.id())
+                    && facultyVersions.getOrDefault(changed.id(), Long.MIN_VALUE) < changed.version()) {
+                faculties.put(changed.id(), new FacultyDto(changed.id(), after.name(), after.color()));
+                facultyVersions.put(changed.id(), changed.version());
+            }
+        }
+    }
+
+    private <T> T read(Supplier<T> action) {
+        lock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        lock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Id удаленных строк. Отметка переживает одно полное перестроение: к этому времени все
+     * события, зафиксированные до удаления, уже доставлены.
+     */
+    private static final class Tombstones {
+        private Set<Long> current = new HashSet<>();
+        private Set<Long> previous = new HashSet<>();
+
+        void add(long id) {
+            current.add(id);
+        }
+
+        boolean contains(long id) {
+            return current.contains(id) || previous.contains(id);
+        }
+
+        void rotate(LongPredicate present) {
+            current.removeIf(present::test);
+            previous = current;
+            current = new HashSet<>();
+        }
+    }
+
+    /**
+     * Плотные колонки. Удаление переносит последнюю строку на место удаленной, поэтому
+     * дыр в массивах нет и проход всегда идет по {@code [0, size)}.
+     */
+    private static final class Columns {
+        long[] ids;
+        int[] ages;
+        long[] facultyIds;
+        int[] nameCodes;
+        long[] versions;
+        int size;
+
+        final LongIntMap rowById;
+        final List<String> dictionary = new ArrayList<>();
+        final Map<String, Integer> codes = new HashMap<>();
+        final NameTrigramIndex nameIndex = new NameTrigramIndex();
+        // Строка, которая сейчас носит имя с этим кодом, или -1; имена студентов уникальны
+        int[] rowByCode = new int[16];
+
+        Columns(int capacity) {
+            ids = new long[capacity];
+            ages = new int[capacity];
+            facultyIds = new long[capacity];
+            nameCodes = new int[capacity];
+            versions = new long[capacity];
+            rowById = new LongIntMap(capacity);
+        }
+
+        // Событие не новее строки (запоздавшее или уже учтенное снимком) пропускается
+        void upsert(long id, String name, int age, long facultyId, long version) {
+            int row = rowById.get(id);
+            if (row >= 0 && versions[row] >= version) {
+                return;
+            }
+            if (row < 0) {
+                if (size == ids.length) {
+                    grow();
+                }
+                row = size++;
+                ids[row] = id;
+                rowById.put(id, row);
+            } else if (rowByCode[nameCodes[row]] == row) {
+                rowByCode[nameCodes[row]] = -1;
+            }
+            ages[row] = age;
+            facultyIds[row] = facultyId;
+            versions[row] = version;
+            nameCodes[row] = encode(name);
+            rowByCode[nameCodes[row]] = row;
+        }
+
+        void remove(long id) {
+            int row = rowById.remove(id);
+            if (row < 0) {
+                return;
+            }
+            if (rowByCode[nameCodes[row]] == row) {
+                rowByCode[nameCodes[row]] = -1;
+            }
+            int last = --size;
+            if (row != last) {
+                ids[row] = ids[last];
+                ages[row] = ages[last];
+                facultyIds[row] = facultyIds[last];
+                nameCodes[row] = nameCodes[last];
+                versions[row] = versions[last];
+                rowById.put(ids[row], row);
+                if (rowByCode[nameCodes[row]] == last) {
+                    rowByCode[nameCodes[row]] = row;
+                }
+            }
+        }
+
+        void clearFaculty(long facultyId) {
+            for (int row = 0; row < size; row++) {
+                if (facultyIds[row] == facultyId) {
+                    facultyIds[row] = NO_FACULTY;
+                }
+            }
+        }
+
+        StudentDto materialize(int row, Map<Long, FacultyDto> faculties) {
+            return new StudentDto(ids[row], dictionary.get(nameCodes[row]), ages[row],
+                    facultyIds[row] == NO_FACULTY ? null : faculties.get(facultyIds[row]));
+        }
+
+        private int encode(String name) {
+            Integer code = codes.get(name);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(name);
+                codes.put(name, code);
+                nameIndex.add(code, name);
+                if (code == rowByCode.length) {
+                    rowByCode = Arrays.copyOf(rowByCode, code * 2);
+                    Arrays.fill(rowByCode, code, rowByCode.length, -1);
+                }
+                rowByCode[code] = -1;
+            }
+            return code;
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            ages = Arrays.copyOf(ages, capacity);
+            facultyIds = Arrays.copyOf(facultyIds, capacity);
+            nameCodes = Arrays.copyOf(nameCodes, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+        }
+    }
+
+    /**
+     * Хеш-таблица long → int с открытой адресацией, чтобы индекс по id не упаковывал
+     * каждую пару в объекты. Ключ 0 не используется: последовательности выдают id с 1.
+     */
+    static final class LongIntMap {
+        private long[] keys;
+        private int[] values;
+        private int size;
+
+        LongIntMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = index(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int i = index(key, mask);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int remove(long key) {
+            int mask = keys.length - 1;
+            int i = index(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return -1;
+                }
+                i = (i + 1) & mask;
+            }
+            int removed = values[i];
+            size--;
+            // Сдвигаем следующие элементы цепочки в дыру, чтобы поиск не обрывался на ней
+            int gap = i;
+            keys[gap] = 0;
+            for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+                int home = index(keys[next], mask);
+                if (((next - home) & mask) >= ((next - gap) & mask)) {
+                    keys[gap] = keys[next];
+                    values[gap] = values[next];
+                    keys[next] = 0;
+                    gap = next;
+                }
+            }
+            return removed;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int index(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в ленте студентов: порядок ленты, направление перехода и граничный ID.
+ * Клиенту передается в виде непрозрачной строки Base64.
+ */
+record StudentCursor(Sort.Direction order, boolean forward, long boundaryId) {
+    private static final String VERSION = "s1";
+
+    String encode() {
+        String value = String.join(":", VERSION, order.name(), forward ? "next" : "prev", Long.toString(boundaryId));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static StudentCursor decode(String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (parts.length != 4 || !VERSION.equals(parts[0]) || !(parts[2].equals("next") || parts[2].equals("prev"))) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        try {
+            return new StudentCursor(Sort.Direction.valueOf(parts[1]), parts[2].equals("next"), Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+}
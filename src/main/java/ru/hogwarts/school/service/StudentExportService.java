@@ -0,0 +1,176 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Потоковая выгрузка всех студентов с названиями факультетов в NDJSON или CSV.
+ * <p>
+ * Строки читаются однонаправленным курсором JDBC порциями по fetch size (для PostgreSQL
+ * курсор работает только внутри транзакции, поэтому чтение идет в read-only транзакции)
+ * и сразу пишутся в ответ, минуя контекст персистентности. Расход памяти не зависит
+ * от размера таблицы.
+ */
+@Service
+public class StudentExportService {
+    private static final Logger logger = LoggerFactory.getLogger(StudentExportService.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String EXPORT_SQL = """
+            SELECT s.id, s.name, s.age, s.faculty_id, f.name AS faculty_name
+            FROM student s
+                     LEFT JOIN faculty f ON f.id = s.faculty_id
+            ORDER BY s.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory;
+
+    public StudentExportService(DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper,
+                                @Value("${student.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    public void export(Format format, OutputStream out) {
+        logger.info("Вызван метод выгрузки студентов в формате {}", format);
+        long start = System.nanoTime();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(jsonFactory, writer);
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_SQL, rowWriter));
+            rowWriter.finish();
+            logger.info("Выгружено {} студентов за {} мс", rowWriter.count, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private abstract static class RowWriter implements RowCallbackHandler {
+        private long count;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long facultyId = rs.getLong("faculty_id");
+            Long faculty = rs.wasNull() ? null : facultyId;
+            try {
+                write(rs.getLong("id"), rs.getString("name"), rs.getInt("age"), faculty, rs.getString("faculty_name"));
+            } catch (IOException e) {
+                // Клиент закрыл соединение: прерываем чтение курсора
+                throw new UncheckedIOException(e);
+            }
+            count++;
+        }
+
+        abstract void write(long id, String name, int age, Long facultyId, String facultyName) throws IOException;
+
+        abstract void finish() throws IOException;
+    }
+
+    private static final class NdjsonRowWriter extends RowWriter {
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(JsonFactory jsonFactory, Writer writer) throws IOException {
+            this.writer = writer;
+            // flush генератора не должен доходить до сокета на каждой строке
+            this.generator = jsonFactory.createGenerator(writer)
+                    .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void write(long id, String name, int age, Long facultyId, String facultyName) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", id);
+            generator.writeStringField("name", name);
+            generator.writeNumberField("age", age);
+            if (facultyId == null) {
+                generator.writeNullField("facultyId");
+            } else {
+                generator.writeNumberField("facultyId", facultyId);
+            }
+            generator.writeStringField("facultyName", facultyName);
+            generator.writeEndObject();
+            generator.flush();
+            writer.write('\n');
+        }
+
+        @Override
+        void finish() throws IOException {
+            generator.close();
+            writer.flush();
+        }
+    }
+
+    private static final class CsvRowWriter extends RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write("id,name,age,faculty_id,faculty_name\r\n");
+        }
+
+        @Override
+        void write(long id, String name, int age, Long facultyId, String facultyName) throws IOException {
+            writer.write(Long.toString(id));
+            writer.write(',');
+            writeField(name);
+            writer.write(',');
+            writer.write(Integer.toString(age));
+            writer.write(',');
+            if (facultyId != null) {
+                writer.write(Long.toString(facultyId));
+            }
+            writer.write(',');
+            writeField(facultyName);
+            writer.write("\r\n");
+        }
+
+        // Экранирование по RFC 4180
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
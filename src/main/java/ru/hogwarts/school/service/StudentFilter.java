@@ -0,0 +1,27 @@
+package ru.hogwarts.school.service;
+
+/**
+ * Условие отбора студентов для {@link StudentColumnStore}. Пустое поле не ограничивает выборку.
+ */
+public record StudentFilter(Integer minAge, Integer maxAge, Long facultyId, String namePrefix) {
+
+    public static StudentFilter all() {
+        return new StudentFilter(null, null, null, null);
+    }
+
+    public static StudentFilter age(int age) {
+        return new StudentFilter(age, age, null, null);
+    }
+
+    public static StudentFilter ageBetween(int minAge, int maxAge) {
+        return new StudentFilter(minAge, maxAge, null, null);
+    }
+
+    public static StudentFilter faculty(long facultyId) {
+        return new StudentFilter(null, null, facultyId, null);
+    }
+
+    public StudentFilter withNamePrefix(String prefix) {
+        return new StudentFilter(minAge, maxAge, facultyId, prefix);
+    }
+}
@@ -0,0 +1,186 @@
+package ru.hogwarts.school.service;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.dto.StudentImportError;
+import ru.hogwarts.school.dto.StudentImportReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Импорт студентов и факультетов из CSV через протокол COPY.
+ * <p>
+ * Файл с колонками {@code name,age,faculty_name,faculty_color} и строкой заголовка потоково
+ * загружается во временную таблицу, проверяется set-based запросами (ограничения таблицы
+ * student, повторы имен, пара name/color факультета) и сливается в faculty и student
+ * в одной транзакции. Ошибки отмечаются построчно в самой временной таблице.
+ */
+@Service
+public class StudentImportService {
+    private static final Logger logger = LoggerFactory.getLogger(StudentImportService.class);
+    // Должен совпадать с allocationSize у Student и Faculty
+    private static final int ID_ALLOCATION_SIZE = 50;
+
+    private static final String CREATE_STAGING_SQL = """
+            CREATE TEMP TABLE student_import
+            (
+                row_no        BIGSERIAL,
+                name          TEXT,
+                age           TEXT,
+                faculty_name  TEXT,
+                faculty_color TEXT,
+                error         TEXT
+            ) ON COMMIT DROP
+            """;
+
+    private static final String COPY_SQL = "COPY student_import (name, age, faculty_name, faculty_color) " +
+            "FROM STDIN WITH (FORMAT csv, HEADER true)";
+
+    // Проверки выполняются по порядку; строка получает первую найденную ошибку
+    private static final List<String> VALIDATION_SQL = List.of(
+            "UPDATE student_import SET error = 'Student name cannot be empty' " +
+                    "WHERE name IS NULL OR btrim(name) = ''",
+            "UPDATE student_import SET error = 'Student name is longer than 255' " +
+                    "WHERE error IS NULL AND length(name) > 255",
+            "UPDATE student_import SET error = 'Age must be an integer' " +
+                    "WHERE error IS NULL AND (age IS NULL OR age !~ '^\\s*-?[0-9]{1,9}\\s*$')",
+            "UPDATE student_import SET error = 'Age must be at least 16' " +
+                    "WHERE error IS NULL AND btrim(age)::int < 16",
+            "UPDATE student_import SET error = 'Faculty requires both name and color' " +
+                    "WHERE error IS NULL AND (faculty_name IS NULL) <> (faculty_color IS NULL)",
+            "UPDATE student_import SET error = 'Faculty name or color is longer than 255' " +
+                    "WHERE error IS NULL AND (length(faculty_name) > 255 OR length(faculty_color) > 255)",
+            // Повтор имени в файле: применяется последняя строка, как и в POST /student/bulk
+            """
+                    UPDATE student_import i SET error = 'Duplicate name, superseded by row ' || d.last_row
+                    FROM (SELECT name, max(row_no) AS last_row FROM student_import
+                          WHERE error IS NULL GROUP BY name HAVING count(*) > 1) d
+                    WHERE i.error IS NULL AND i.name = d.name AND i.row_no < d.last_row
+                    """);
+
+    // Новые строки получают идентификаторы из блоков последовательности, как у Hibernate (pooled-lo):
+    // один nextval на ID_ALLOCATION_SIZE строк. DEFAULT столбца тратил бы по блоку на каждую строку
+    private static final String MERGE_FACULTIES_SQL = """
+            WITH fresh AS (
+                SELECT name, color, row_number() OVER (ORDER BY name, color) - 1 AS n
+                FROM (SELECT DISTINCT faculty_name AS name, faculty_color AS color
+                      FROM student_import i
+                      WHERE i.error IS NULL AND i.faculty_name IS NOT NULL
+                        AND NOT EXISTS (SELECT 1 FROM faculty f
+                                        WHERE f.name = i.faculty_name AND f.color = i.faculty_color)) d),
+                 blocks AS (
+                     SELECT b, nextval('faculty_seq') AS lo
+                     FROM generate_series(0, (SELECT (count(*) + %1$d - 1) / %1$d - 1 FROM fresh)) b)
+            INSERT INTO faculty (id, name, color)
+            SELECT bl.lo + fr.n %% %1$d, fr.name, fr.color
+            FROM fresh fr
+                     JOIN blocks bl ON bl.b = fr.n / %1$d
+            ON CONFLICT (name, color) DO NOTHING
+            """.formatted(ID_ALLOCATION_SIZE);
+
+    // Факультет разрешается соединением по паре name/color; созданные и обновленные строки
+    // различаются по xmax = 0 у вставленных версий. Существующим студентам передается их id,
+    // и конфликт по name превращает вставку в обновление
+    private static final String MERGE_STUDENTS_SQL = """
+            WITH fresh AS (
+                SELECT i.row_no, row_number() OVER (ORDER BY i.row_no) - 1 AS n
+                FROM student_import i
+                WHERE i.error IS NULL AND NOT EXISTS (SELECT 1 FROM student s WHERE s.name = i.name)),
+                 blocks AS (
+                     SELECT b, nextval('student_seq') AS lo
+                     FROM generate_series(0, (SELECT (count(*) + %1$d - 1) / %1$d - 1 FROM fresh)) b),
+                 merged AS (
+                     INSERT INTO student (id, name, age, faculty_id)
+                         SELECT COALESCE(s.id, bl.lo + fr.n %% %1$d), i.name, btrim(i.age)::int, f.id
+                         FROM student_import i
+                                  LEFT JOIN student s ON s.name = i.name
+                                  LEFT JOIN fresh fr ON fr.row_no = i.row_no
+                                  LEFT JOIN blocks bl ON bl.b = fr.n / %1$d
+                                  LEFT JOIN faculty f ON f.name = i.faculty_name AND f.color = i.faculty_color
+                         WHERE i.error IS NULL
+                         ON CONFLICT (name) DO UPDATE SET age = EXCLUDED.age, faculty_id = EXCLUDED.faculty_id
+                         RETURNING (xmax = 0) AS inserted)
+            SELECT count(*) FILTER (WHERE inserted), count(*) FILTER (WHERE NOT inserted) FROM merged
+            """.formatted(ID_ALLOCATION_SIZE);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${student.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    public StudentImportService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public StudentImportReport importCsv(InputStream csv) {
+        logger.info("Вызван метод CSV-импорта студентов");
+        long start = System.nanoTime();
+        StudentImportReport report;
+        try {
+            report = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute(CREATE_STAGING_SQL);
+                long copied = copy(csv);
+                logger.debug("Во временную таблицу загружено {} строк", copied);
+                jdbcTemplate.execute("ANALYZE student_import");
+                VALIDATION_SQL.forEach(jdbcTemplate::update);
+
+                int facultiesCreated = jdbcTemplate.update(MERGE_FACULTIES_SQL);
+                long[] merged = jdbcTemplate.queryForObject(MERGE_STUDENTS_SQL,
+                        (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+                eventPublisher.publishEvent(new StudentsBulkChangedEvent("csv-import"));
+                return summarize(copied, merged[0], merged[1], facultiesCreated, start);
+            });
+        } catch (DataAccessException e) {
+            // Ошибки разбора CSV в COPY отменяют весь импорт
+            logger.warn("CSV-импорт студентов отклонен: {}", e.getMostSpecificCause().getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMostSpecificCause().getMessage());
+        }
+        logger.info("CSV-импорт студентов завершен: создано {}, обновлено {}, отклонено {} за {} мс",
+                report.created(), report.updated(), report.rejected(), report.durationMs());
+        return report;
+    }
+
+    // COPY идет через CopyManager мимо datasource-proxy, поэтому в профиль запроса засчитывается явно
+    private long copy(InputStream csv) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            long start = System.nanoTime();
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, csv);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                SqlProfile profile = SqlProfile.current();
+                if (profile != null) {
+                    profile.record(COPY_SQL, System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    private StudentImportReport summarize(long total, long created, long updated, int facultiesCreated, long start) {
+        List<StudentImportError> errors = jdbcTemplate.query(
+                "SELECT row_no, name, error FROM student_import WHERE error IS NOT NULL ORDER BY row_no LIMIT ?",
+                (rs, rowNum) -> new StudentImportError(rs.getLong("row_no"), rs.getString("name"), rs.getString("error")),
+                maxReportedErrors);
+        return new StudentImportReport(total, created, updated, total - created - updated, facultiesCreated,
+                (System.nanoTime() - start) / 1_000_000, errors);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.dto.StudentSearchHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Поиск студентов по имени для подсказок при вводе.
+ * <p>
+ * Сначала идут совпадения по префиксу без учета регистра в порядке индекса
+ * {@code lower(name) text_pattern_ops}: запрос читает диапазон индекса и останавливается
+ * на limit строках. Если их меньше limit, список добирается похожими именами с опечатками,
+ * самые похожие первыми. Нечеткий поиск идет по триграммному индексу колоночной модели,
+ * а когда она выключена или еще строится — через pg_trgm и GIN-индекс в базе.
+ */
+@Service
+public class StudentSearchService {
+    private static final Logger logger = LoggerFactory.getLogger(StudentSearchService.class);
+    private static final int MAX_QUERY_LENGTH = 100;
+
+    // Префикс задан явным диапазоном в операторах text_pattern_ops, а не LIKE: так границы
+    // индекса известны и в общем (generic) плане подготовленного запроса. USING ~<~ — порядок
+    // самого индекса, поэтому сортировки нет и чтение останавливается на limit строках.
+    private static final String PREFIX_SQL = """
+            SELECT id, name, age, 1.0 AS score
+            FROM student
+            WHERE lower(name) ~>=~ :prefix
+              AND lower(name) ~<~ :prefixEnd
+            ORDER BY lower(name) USING ~<~
+            LIMIT :limit
+            """;
+
+    // % отбирает имена со сходством не ниже pg_trgm.similarity_threshold (по умолчанию 0.3)
+    private static final String SIMILAR_SQL = """
+            SELECT id, name, age, similarity(lower(name), :query) AS score
+            FROM student
+            WHERE lower(name) % :query
+              AND NOT (lower(name) ~>=~ :prefix AND lower(name) ~<~ :prefixEnd)
+            ORDER BY score DESC, id
+            LIMIT :limit
+            """;
+
+    private static final RowMapper<StudentSearchHit> HIT_MAPPER = (rs, rowNum) ->
+            new StudentSearchHit(rs.getLong("id"), rs.getString("name"), rs.getInt("age"), rs.getDouble("score"));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectProvider<StudentColumnStore> columnStore;
+
+    @Value("${student.search.default-limit:10}")
+    private int defaultLimit;
+
+    @Value("${student.search.max-limit:50}")
+    private int maxLimit;
+
+    public StudentSearchService(NamedParameterJdbcTemplate jdbcTemplate, ObjectProvider<StudentColumnStore> columnStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.columnStore = columnStore;
+    }
+
+    public List<StudentSearchHit> search(String query, Integer limit) {
+        logger.info("Вызван метод поиска студентов по имени: '{}'", query);
+        String normalized = query == null ? "" : query.strip().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty() || normalized.length() > MAX_QUERY_LENGTH) {
+            logger.warn("Некорректный поисковый запрос: '{}'", query);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Query must contain 1 to " + MAX_QUERY_LENGTH + " characters");
+        }
+        int resultLimit = limit == null ? defaultLimit : limit;
+        if (resultLimit < 1 || resultLimit > maxLimit) {
+            logger.warn("Некорректный лимит поиска: {}", resultLimit);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + maxLimit);
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("query", normalized)
+                .addValue("prefix", normalized)
+                .addValue("prefixEnd", prefixEnd(normalized))
+                .addValue("limit", resultLimit);
+        List<StudentSearchHit> hits = new ArrayList<>(jdbcTemplate.query(PREFIX_SQL, params, HIT_MAPPER));
+        int missing = resultLimit - hits.size();
+        if (missing > 0) {
+            StudentColumnStore store = columnStore.getIfAvailable();
+            if (store != null && store.isReady()) {
+                // Все совпадения по префиксу уже в hits, их исключаем по ID
+                Set<Long> found = hits.stream().map(StudentSearchHit::id).collect(Collectors.toSet());
+                hits.addAll(store.findSimilarNames(normalized, found, missing));
+            } else {
+                hits.addAll(jdbcTemplate.query(SIMILAR_SQL, params.addValue("limit", missing), HIT_MAPPER));
+            }
+        }
+        logger.debug("Найдено {} студентов по запросу '{}'", hits.size(), query);
+        return hits;
+    }
+
+    /**
+     * Наименьшая строка больше всех строк с этим префиксом: последний символ увеличен на единицу.
+     */
+    static String prefixEnd(String prefix) {
+        char last = prefix.charAt(prefix.length() - 1);
+        // U+FFFF — не символ и в именах не встречается; для него границей служит сам префикс + U+FFFF
+        return last == Character.MAX_VALUE
+                ? prefix + Character.MAX_VALUE
+                : prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+    }
+}
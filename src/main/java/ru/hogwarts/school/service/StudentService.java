@@ -4,16 +4,24 @@ import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
-import ru.hogwarts.school.entities.Faculty;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentAgeStatistics;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.dto.StudentSlice;
 import ru.hogwarts.school.entities.Student;
 import ru.hogwarts.school.repository.StudentRepository;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.LongStream;
 
 @Service
 public class StudentService {
@@ -21,12 +29,28 @@ public class StudentService {
     private final StudentRepository studentRepository;
     private final Object lock = new Object(); // Объект для синхронизации
 
-    public StudentService(StudentRepository studentRepository) {
+    @Value("${student.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${student.page.max-size:100}")
+    private int maxPageSize;
+
+    private final StudentStatistics studentStatistics;
+    private final ObjectProvider<StudentColumnStore> columnStore;
+    private final EntityCaches entityCaches;
+
+    public StudentService(StudentRepository studentRepository,
+                          StudentStatistics studentStatistics,
+                          ObjectProvider<StudentColumnStore> columnStore,
+                          EntityCaches entityCaches) {
         this.studentRepository = studentRepository;
+        this.studentStatistics = studentStatistics;
+        this.columnStore = columnStore;
+        this.entityCaches = entityCaches;
     }
 
     @Transactional
-    public Student addStudent(Student student) {
+    public StudentDto addStudent(Student student) {
         logger.info("Вызван метод создания студента");
         try {
             if (student.getName() == null || student.getName().isBlank()) {
@@ -39,16 +63,24 @@ public class StudentService {
             }
             Student savedStudent = studentRepository.save(student);
             logger.debug("Создан студент: {}", savedStudent);
-            return savedStudent;
+            return StudentDto.from(savedStudent);
         } catch (Exception e) {
             logger.error("Ошибка при создании студента: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error creating student: " + e.getMessage());
         }
     }
 
-    public Student getStudent(Long id) {
+    /**
+     * Студент по ID одним запросом с факультетом. Результат кешируется (см. {@link EntityCaches}),
+     * поэтому повторные запросы не доходят до базы.
+     */
+    public StudentDto getStudent(Long id) {
+        return entityCaches.student(id, this::loadStudent);
+    }
+
+    private StudentDto loadStudent(Long id) {
         logger.debug("Вызван метод получения студента по ID: {}", id);
-        return studentRepository.findById(id).orElseThrow(() -> {
+        return studentRepository.findDtoById(id).orElseThrow(() -> {
             logger.error("Студент с ID {} не найден", id);
             return new EntityNotFoundException("Student not found");
         });
@@ -57,45 +89,59 @@ public class StudentService {
     @Transactional
     public void removeStudent(Long id) {
         logger.info("Вызван метод удаления студента по ID: {}", id);
-        if (!studentRepository.existsById(id)) {
+        Student student = studentRepository.findById(id).orElseThrow(() -> {
             logger.warn("Попытка удаления несуществующего студента с ID: {}", id);
-            throw new EntityNotFoundException("Student not found");
-        }
-        studentRepository.deleteById(id);
+            return new EntityNotFoundException("Student not found");
+        });
+        studentRepository.delete(student);
         logger.debug("Студент с ID {} удален", id);
     }
 
     @Transactional
-    public Student updateStudent(Long id, Student student) {
+    public StudentDto updateStudent(Long id, Student student) {
         logger.info("Вызван метод обновления студента по ID: {}", id);
-        if (!studentRepository.existsById(id)) {
+        // Загруженный студент остается в контексте персистентности, и merge в save() не делает второй SELECT
+        if (studentRepository.findById(id).isEmpty()) {
             logger.warn("Попытка обновления несуществующего студента с ID: {}", id);
             throw new EntityNotFoundException("Student not found");
         }
         student.setId(id);
         Student updatedStudent = studentRepository.save(student);
         logger.debug("Обновлен студент: {}", updatedStudent);
-        return updatedStudent;
+        return StudentDto.from(updatedStudent);
     }
 
-    public List<Student> findStudentsByAge(int age) {
+    public List<StudentDto> findStudentsByAge(int age) {
         logger.info("Вызван метод поиска студентов по возрасту: {}", age);
-        List<Student> students = studentRepository.findAllByAge(age);
+        StudentColumnStore store = readyColumnStore();
+        List<StudentDto> students = store != null
+                ? store.find(StudentFilter.age(age))
+                : studentRepository.findDtosByAge(age);
         logger.debug("Найдено {} студентов возраста {}", students.size(), age);
         return students;
     }
 
-    public List<Student> findStudentsByAgeBetween(int minAge, int maxAge) {
+    public List<StudentDto> findStudentsByAgeBetween(int minAge, int maxAge) {
         logger.info("Вызван метод поиска студентов в возрастном диапазоне: {} - {}", minAge, maxAge);
-        List<Student> students = studentRepository.findByAgeBetween(minAge, maxAge);
+        StudentColumnStore store = readyColumnStore();
+        List<StudentDto> students = store != null
+                ? store.find(StudentFilter.ageBetween(minAge, maxAge))
+                : studentRepository.findDtosByAgeBetween(minAge, maxAge);
         logger.debug("Найдено {} студентов в диапазоне {} - {}", students.size(), minAge, maxAge);
         return students;
     }
 
-    public Faculty getStudentFaculty(Long id) {
+    /**
+     * Колоночная модель, если она включена и уже построена; иначе запрос идет в базу.
+     */
+    private StudentColumnStore readyColumnStore() {
+        StudentColumnStore store = columnStore.getIfAvailable();
+        return store != null && store.isReady() ? store : null;
+    }
+
+    public FacultyDto getStudentFaculty(Long id) {
         logger.info("Вызван метод получения факультета студента по ID: {}", id);
-        Student student = getStudent(id);
-        Faculty faculty = student.getFaculty();
+        FacultyDto faculty = getStudent(id).faculty();
         if (faculty == null) {
             logger.warn("У студента с ID {} не указан факультет", id);
         }
@@ -104,106 +150,152 @@ public class StudentService {
 
     public int getTotalCountOfStudents() {
         logger.info("Вызван метод получения общего количества студентов");
-        int count = studentRepository.getTotalCountOfStudents();
+        int count = (int) studentStatistics.get().count();
         logger.debug("Общее количество студентов: {}", count);
         return count;
     }
 
     public double getAverageAge() {
         logger.info("Вызван метод получения среднего возраста студентов");
-        double average = studentRepository.getAverageAge();
+        double average = studentStatistics.get().averageAge();
         logger.debug("Средний возраст студентов: {}", average);
         return average;
     }
 
-    public List<Student> findLastFiveStudents() {
+    public List<StudentDto> findLastFiveStudents() {
         logger.info("Вызван метод получения последних 5 студентов");
-        List<Student> students = studentRepository.findLastFiveStudents();
+        List<StudentDto> students = readPage(null, Sort.Direction.DESC, 5).content();
         logger.debug("Найдено {} последних студентов", students.size());
         return students;
     }
 
-    // Шаг 1: Имена студентов на 'A' в верхнем регистре
+    /**
+     * Лента студентов с keyset-пагинацией по ID в обе стороны. Каждая страница — один
+     * запрос {@code id > ?} или {@code id < ?} с LIMIT по первичному ключу, поэтому
+     * глубокие страницы стоят столько же, сколько первая. Порядок задается для первой
+     * страницы, дальше он хранится в курсоре.
+     */
+    public StudentSlice getStudents(String cursor, Integer size, Sort.Direction order) {
+        logger.info("Вызван метод получения ленты студентов. Размер: {}, порядок: {}", size, order);
+        int pageSize = size == null ? defaultPageSize : size;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            logger.warn("Некорректный размер страницы: {}", pageSize);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + maxPageSize);
+        }
+        StudentCursor position;
+        try {
+            position = cursor == null || cursor.isBlank() ? null : StudentCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Некорректный курсор ленты студентов: {}", cursor);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        StudentSlice slice = readPage(position, order, pageSize);
+        logger.debug("Получено {} студентов", slice.content().size());
+        return slice;
+    }
+
+    private StudentSlice readPage(StudentCursor position, Sort.Direction defaultOrder, int pageSize) {
+        Sort.Direction order = position == null ? defaultOrder : position.order();
+        boolean forward = position == null || position.forward();
+        // Лишняя строка показывает, есть ли страница дальше, без COUNT(*)
+        Limit limit = Limit.of(pageSize + 1);
+        List<StudentDto> rows = order.isAscending() == forward
+                ? studentRepository.findDtosAfter(position == null ? 0 : position.boundaryId(), limit)
+                : studentRepository.findDtosBefore(position == null ? Long.MAX_VALUE : position.boundaryId(), limit);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<StudentDto> content = new ArrayList<>(hasMore ? rows.subList(0, pageSize) : rows);
+        if (!forward) {
+            Collections.reverse(content);
+        }
+        if (content.isEmpty()) {
+            return new StudentSlice(content, null, null);
+        }
+        boolean hasNext = !forward || hasMore;
+        boolean hasPrevious = forward ? position != null : hasMore;
+        String nextCursor = hasNext
+                ? new StudentCursor(order, true, content.get(content.size() - 1).id()).encode()
+                : null;
+        String previousCursor = hasPrevious
+                ? new StudentCursor(order, false, content.get(0).id()).encode()
+                : null;
+        return new StudentSlice(content, nextCursor, previousCursor);
+    }
+
+    // Шаг 1: Имена студентов на 'A' в верхнем регистре; отбор и сортировка по lower(name) выполняются в базе
     public List<String> getStudentNamesStartingWithA() {
         logger.info("Получение имен студентов, начинающихся на 'A'");
-        return studentRepository.findAll().stream().map(Student::getName).filter(name -> name.toUpperCase().startsWith("A")).map(String::toUpperCase).sorted().collect(Collectors.toList());
+        return studentRepository.findNamesByLowerCasePrefix("a", StudentSearchService.prefixEnd("a")).stream()
+                .map(String::toUpperCase)
+                .collect(Collectors.toList());
     }
 
-    // Шаг 2: Средний возраст через findAll
+    // Шаг 2: Средний возраст; берется из статистики вместо загрузки всей таблицы через findAll
     public double getAverageAgeWithFindAll() {
         logger.info("Вычисление среднего возраста через findAll");
-        return studentRepository.findAll().stream().mapToInt(Student::getAge).average().orElse(0.0);
+        return studentStatistics.get().averageAge();
     }
 
-    // Шаг 4: Оптимизированная сумма
+    public StudentAgeStatistics getAgeStatistics() {
+        logger.info("Вызван метод получения статистики возрастов студентов");
+        return studentStatistics.get();
+    }
+
+    // Шаг 4: Сумма чисел от 1 до 1 000 000 по формуле; стратегии сравниваются в SumBenchmark
     public long calculateSum() {
         logger.info("Вычисление суммы чисел");
-
-        // Оптимизация 1: Использование параллельных стримов
-        long startTime = System.currentTimeMillis();
-        long parallelSum = LongStream.rangeClosed(1, 1_000_000).parallel().sum();
-        long parallelTime = System.currentTimeMillis() - startTime;
-
-        logger.debug("Параллельное вычисление: {} мс", parallelTime);
-
-        // Оптимизация 2: Использование формулы
-        startTime = System.currentTimeMillis();
-        long formulaSum = (long) 1_000_000 * (1_000_000 + 1) / 2;
-        long formulaTime = System.currentTimeMillis() - startTime;
-
-        logger.debug("Формульное вычисление: {} мс", formulaTime);
-
-        return formulaSum; // Возвращаем самый быстрый вариант
+        long n = 1_000_000;
+        return n * (n + 1) / 2;
     }
 
-    public List<Student> getFirstSixStudents() {
+    public List<StudentDto> getFirstSixStudents() {
         logger.info("Получение первых шести студентов");
-        return studentRepository.findAll().stream().limit(6).collect(Collectors.toList());
+        return readPage(null, Sort.Direction.ASC, 6).content();
     }
 
-    public void printStudentsParallel(List<Student> students) {
+    public void printStudentsParallel(List<StudentDto> students) {
         if (students.size() < 6) {
             logger.warn("Недостаточно студентов для вывода (требуется 6, найдено {})", students.size());
             return;
         }
 
         // Основной поток: первые два студента
-        System.out.println(students.get(0).getName());
-        System.out.println(students.get(1).getName());
+        System.out.println(students.get(0).name());
+        System.out.println(students.get(1).name());
 
         // Поток 1: третий и четвертый студент
         new Thread(() -> {
-            System.out.println(students.get(2).getName());
-            System.out.println(students.get(3).getName());
+            System.out.println(students.get(2).name());
+            System.out.println(students.get(3).name());
         }).start();
 
         // Поток 2: пятый и шестой студент
         new Thread(() -> {
-            System.out.println(students.get(4).getName());
-            System.out.println(students.get(5).getName());
+            System.out.println(students.get(4).name());
+            System.out.println(students.get(5).name());
         }).start();
     }
 
-    public void printStudentsSynchronized(List<Student> students) {
+    public void printStudentsSynchronized(List<StudentDto> students) {
         if (students.size() < 6) {
             logger.warn("Недостаточно студентов для вывода (требуется 6, найдено {})", students.size());
             return;
         }
 
         // Основной поток: первые два студента
-        synchronizedPrint(students.get(0).getName());
-        synchronizedPrint(students.get(1).getName());
+        synchronizedPrint(students.get(0).name());
+        synchronizedPrint(students.get(1).name());
 
         // Поток 1: третий и четвертый студент
         new Thread(() -> {
-            synchronizedPrint(students.get(2).getName());
-            synchronizedPrint(students.get(3).getName());
+            synchronizedPrint(students.get(2).name());
+            synchronizedPrint(students.get(3).name());
         }).start();
 
         // Поток 2: пятый и шестой студент
         new Thread(() -> {
-            synchronizedPrint(students.get(4).getName());
-            synchronizedPrint(students.get(5).getName());
+            synchronizedPrint(students.get(4).name());
+            synchronizedPrint(students.get(5).name());
         }).start();
     }
 
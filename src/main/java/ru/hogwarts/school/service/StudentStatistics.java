@@ -0,0 +1,116 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentAgeStatistics;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Статистика возрастов студентов, поддерживаемая инкрементально.
+ * <p>
+ * Изменения через JPA приходят событиями {@link StudentChangedEvent} после коммита;
+ * после пакетной записи в обход JPA и периодически статистика пересчитывается
+ * одним запросом GROUP BY age. Чтение отдает готовый неизменяемый снимок за O(1).
+ */
+@Component
+public class StudentStatistics {
+    private static final Logger logger = LoggerFactory.getLogger(StudentStatistics.class);
+    private static final int RECONCILE_ATTEMPTS = 3;
+
+    private final StudentRepository studentRepository;
+    private final Object lock = new Object();
+
+    // Под lock
+    private final TreeMap<Integer, Long> histogram = new TreeMap<>();
+    private long count;
+    private long ageSum;
+    private long version;
+
+    private volatile StudentAgeStatistics snapshot = new StudentAgeStatistics(0, 0, null, null, Collections.emptySortedMap());
+
+    public StudentStatistics(StudentRepository studentRepository) {
+        this.studentRepository = studentRepository;
+    }
+
+    public StudentAgeStatistics get() {
+        return snapshot;
+    }
+
+    @EventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        synchronized (lock) {
+            if (event.before() != null) {
+                add(event.before().age(), -1);
+            }
+            if (event.after() != null) {
+                add(event.after().age(), 1);
+            }
+            version++;
+            publishSnapshot();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentsBulkChanged(StudentsBulkChangedEvent event) {
+        logger.debug("Пересчет статистики студентов после изменения: {}", event.source());
+        reconcile();
+    }
+
+    /**
+     * Пересчитывает статистику по таблице. Если во время запроса пришли события,
+     * результат мог их не учесть, поэтому запрос повторяется; оставшееся расхождение
+     * исправит следующий периодический пересчет.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${student.statistics.reconcile-interval:PT5M}",
+            initialDelayString = "${student.statistics.reconcile-interval:PT5M}")
+    public void reconcile() {
+        for (int attempt = 1; attempt <= RECONCILE_ATTEMPTS; attempt++) {
+            long startVersion;
+            synchronized (lock) {
+                startVersion = version;
+            }
+            List<AgeCount> ages = studentRepository.countByAge();
+            synchronized (lock) {
+                if (version != startVersion) {
+                    continue;
+                }
+                long previousCount = count;
+                histogram.clear();
+                count = 0;
+                ageSum = 0;
+                ages.forEach(age -> add(age.age(), age.count()));
+                publishSnapshot();
+                if (previousCount != count) {
+                    logger.info("Статистика студентов исправлена при пересчете: {} -> {}", previousCount, count);
+                }
+                return;
+            }
+        }
+        logger.warn("Не удалось пересчитать статистику студентов: таблица изменялась во время пересчета");
+    }
+
+    private void add(int age, long delta) {
+        histogram.merge(age, delta, (current, change) -> current + change == 0 ? null : current + change);
+        count += delta;
+        ageSum += age * delta;
+    }
+
+    private void publishSnapshot() {
+        snapshot = new StudentAgeStatistics(count,
+                count == 0 ? 0 : (double) ageSum / count,
+                histogram.isEmpty() ? null : histogram.firstKey(),
+                histogram.isEmpty() ? null : histogram.lastKey(),
+                Collections.unmodifiableSortedMap(new TreeMap<>(histogram)));
+    }
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.service;
+
+/**
+ * Изменение таблицы student в обход JPA (пакетная запись, импорт), после которого
+ * производные данные нужно пересчитать целиком.
+ */
+public record StudentsBulkChangedEvent(String source) {
+}
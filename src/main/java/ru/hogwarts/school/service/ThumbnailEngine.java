@@ -0,0 +1,130 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * Генерация превью без полного декодирования исходного изображения.
+ * <p>
+ * Исходник читается через {@link ImageReader} с прореживанием
+ * ({@link ImageReadParam#setSourceSubsampling}) так, чтобы декодированный растр был
+ * уже {@code 4 * targetWidth}; у слишком вытянутых изображений читается только
+ * центральная область с соотношением сторон не более {@value #MAX_ASPECT_RATIO}:1.
+ * Затем растр уменьшается вдвое шагами с билинейной интерполяцией до целевой ширины.
+ * <p>
+ * Пиковая память на одно превью ограничена декодированным растром
+ * {@code 4W x 16W} пикселей по 4 байта ({@code 256 * W^2} байт) плюс не более трети
+ * этого объема на промежуточные копии, независимо от размера исходника:
+ * для W = 100 это около 3.5 МБ вместо ~100 МБ для фото 6000x4000.
+ */
+@Component
+public class ThumbnailEngine {
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailEngine.class);
+    static final int MAX_ASPECT_RATIO = 4;
+
+    public byte[] createThumbnail(Path source, int targetWidth) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(source.toFile())) {
+            ImageReader reader = findReader(iis, source);
+            try {
+                reader.setInput(iis, true, true);
+                String formatName = reader.getFormatName().toLowerCase(Locale.ROOT);
+                BufferedImage preview = scale(read(reader, targetWidth), targetWidth);
+                return encode(preview, formatName);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ImageReader findReader(ImageInputStream iis, Path source) {
+        if (iis == null) {
+            throw new IllegalArgumentException("Cannot open image: " + source);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            throw new IllegalArgumentException("Invalid image file: " + source);
+        }
+        return readers.next();
+    }
+
+    private BufferedImage read(ImageReader reader, int targetWidth) throws IOException {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+
+        ImageReadParam param = reader.getDefaultReadParam();
+        Rectangle region = centralRegion(width, height);
+        if (region.width != width || region.height != height) {
+            param.setSourceRegion(region);
+        }
+        int step = Math.max(1, region.width / (targetWidth * 2));
+        param.setSourceSubsampling(step, step, 0, 0);
+        logger.trace("Декодирование {}x{} с шагом прореживания {}", width, height, step);
+        return reader.read(0, param);
+    }
+
+    private static Rectangle centralRegion(int width, int height) {
+        if (height > (long) width * MAX_ASPECT_RATIO) {
+            int regionHeight = width * MAX_ASPECT_RATIO;
+            return new Rectangle(0, (height - regionHeight) / 2, width, regionHeight);
+        }
+        if (width > (long) height * MAX_ASPECT_RATIO) {
+            int regionWidth = height * MAX_ASPECT_RATIO;
+            return new Rectangle((width - regionWidth) / 2, 0, regionWidth, height);
+        }
+        return new Rectangle(0, 0, width, height);
+    }
+
+    // Пошаговое уменьшение вдвое сохраняет качество билинейной интерполяции
+    private static BufferedImage scale(BufferedImage image, int targetWidth) {
+        int width = Math.min(targetWidth, image.getWidth());
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        int imageType = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = image;
+        do {
+            int stepWidth = Math.max(width, current.getWidth() / 2);
+            int stepHeight = stepWidth == width
+                    ? height
+                    : Math.max(height, current.getHeight() / 2);
+            current = resize(current, stepWidth, stepHeight, imageType);
+        } while (current.getWidth() != width || current.getHeight() != height);
+        return current;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height, int imageType) {
+        BufferedImage resized = new BufferedImage(width, height, imageType);
+        Graphics2D graphics2D = resized.createGraphics();
+        graphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics2D.drawImage(image, 0, 0, width, height, null);
+        graphics2D.dispose();
+        return resized;
+    }
+
+    private static byte[] encode(BufferedImage preview, String formatName) throws IOException {
+        BufferedImage output = preview;
+        if (preview.getColorModel().hasAlpha() && !formatName.equals("png") && !formatName.equals("gif")) {
+            output = resize(preview, preview.getWidth(), preview.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (!ImageIO.write(output, formatName, baos)) {
+            throw new IllegalArgumentException("No image writer for format: " + formatName);
+        }
+        return baos.toByteArray();
+    }
+}
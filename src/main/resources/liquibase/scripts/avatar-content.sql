@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+-- changeset mk:1
+ALTER TABLE avatar ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+-- changeset mk:2
+CREATE INDEX IF NOT EXISTS idx_avatar_content_hash ON avatar (content_hash);
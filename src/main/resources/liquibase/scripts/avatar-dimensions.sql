@@ -0,0 +1,4 @@
+-- liquibase formatted sql
+-- changeset mk:1
+ALTER TABLE avatar ADD COLUMN IF NOT EXISTS width INTEGER;
+ALTER TABLE avatar ADD COLUMN IF NOT EXISTS height INTEGER;
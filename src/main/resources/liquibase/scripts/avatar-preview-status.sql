@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+-- changeset mk:1
+ALTER TABLE avatar ADD COLUMN IF NOT EXISTS preview_status VARCHAR(16) NOT NULL DEFAULT 'READY';
+-- changeset mk:2
+ALTER TABLE avatar ALTER COLUMN data DROP NOT NULL;
@@ -0,0 +1,13 @@
+-- liquibase formatted sql
+-- changeset mk:1
+CREATE TABLE IF NOT EXISTS avatar_preview
+(
+    avatar_id BIGINT PRIMARY KEY REFERENCES avatar (id) ON DELETE CASCADE,
+    data      BYTEA NOT NULL
+    );
+-- changeset mk:2
+INSERT INTO avatar_preview (avatar_id, data)
+SELECT id, data FROM avatar WHERE data IS NOT NULL
+ON CONFLICT (avatar_id) DO NOTHING;
+-- changeset mk:3
+ALTER TABLE avatar DROP COLUMN IF EXISTS data;
@@ -0,0 +1,13 @@
+-- liquibase formatted sql
+-- changeset mk:1
+CREATE SEQUENCE IF NOT EXISTS student_seq INCREMENT BY 50;
+SELECT setval('student_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM student), false);
+ALTER TABLE student ALTER COLUMN id SET DEFAULT nextval('student_seq');
+ALTER SEQUENCE student_seq OWNED BY student.id;
+DROP SEQUENCE IF EXISTS student_id_seq;
+-- changeset mk:2
+CREATE SEQUENCE IF NOT EXISTS faculty_seq INCREMENT BY 50;
+SELECT setval('faculty_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM faculty), false);
+ALTER TABLE faculty ALTER COLUMN id SET DEFAULT nextval('faculty_seq');
+ALTER SEQUENCE faculty_seq OWNED BY faculty.id;
+DROP SEQUENCE IF EXISTS faculty_id_seq;
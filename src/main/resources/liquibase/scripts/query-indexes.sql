@@ -0,0 +1,10 @@
+-- liquibase formatted sql
+-- changeset mk:1
+-- Студенты по возрасту; id во втором поле отдает строки с одним возрастом уже в порядке ORDER BY id
+CREATE INDEX IF NOT EXISTS idx_student_age ON student (age, id);
+-- changeset mk:2
+-- Студенты факультета; индекс по внешнему ключу нужен и для ON DELETE SET NULL при удалении факультета
+CREATE INDEX IF NOT EXISTS idx_student_faculty_id ON student (faculty_id, id);
+-- changeset mk:3
+-- Аватары, ожидающие или не прошедшие генерацию превью: малая доля таблицы, READY в индекс не попадают
+CREATE INDEX IF NOT EXISTS idx_avatar_preview_not_ready ON avatar (preview_status) WHERE preview_status <> 'READY';
@@ -0,0 +1,19 @@
+-- liquibase formatted sql
+-- changeset mk:1
+-- Версия строки: новое значение последовательности при каждой вставке и обновлении.
+-- Упорядочивает события изменений, которые могут прийти не в порядке коммитов
+CREATE SEQUENCE IF NOT EXISTS row_version_seq;
+ALTER TABLE student ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT nextval('row_version_seq');
+ALTER TABLE faculty ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT nextval('row_version_seq');
+-- changeset mk:2 splitStatements:false
+-- Триггер BEFORE UPDATE срабатывает после блокировки строки, поэтому версии одной строки
+-- растут в порядке коммитов, в том числе при обновлениях через SQL в обход JPA
+CREATE OR REPLACE FUNCTION next_row_version() RETURNS trigger AS $$
+BEGIN
+    NEW.version := nextval('row_version_seq');
+    RETURN NEW;
+END
+$$ LANGUAGE plpgsql;
+-- changeset mk:3
+CREATE TRIGGER student_row_version BEFORE UPDATE ON student FOR EACH ROW EXECUTE FUNCTION next_row_version();
+CREATE TRIGGER faculty_row_version BEFORE UPDATE ON faculty FOR EACH ROW EXECUTE FUNCTION next_row_version();
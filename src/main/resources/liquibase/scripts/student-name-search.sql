@@ -0,0 +1,9 @@
+-- liquibase formatted sql
+-- changeset mk:1
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+-- changeset mk:2
+-- Поиск по префиксу: lower(name) LIKE 'abc%' читается диапазоном B-tree независимо от collation
+CREATE INDEX IF NOT EXISTS student_name_prefix_idx ON student (lower(name) text_pattern_ops);
+-- changeset mk:3
+-- Нечеткий поиск через оператор % (pg_trgm), когда колоночная модель выключена
+CREATE INDEX IF NOT EXISTS student_name_trgm_idx ON student USING gin (lower(name) gin_trgm_ops);
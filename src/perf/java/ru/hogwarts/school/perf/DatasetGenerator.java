@@ -0,0 +1,510 @@
+package ru.hogwarts.school.perf;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.hogwarts.school.service.AvatarStorage;
+import ru.hogwarts.school.service.AvatarStorage.StoredContent;
+import ru.hogwarts.school.service.ThumbnailEngine;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Генератор синтетического набора данных для нагрузочных тестов: факультеты, студенты,
+ * аватары с превью и файлы изображений в хранилище {@code path.to.avatars.folder}.
+ * Студенты загружаются параллельно через COPY, каждый поток пишет блоки по
+ * {@value #CHUNK_SIZE} строк в своем соединении. Данные блока зависят только от seed
+ * и номера блока, поэтому при одинаковом seed результат не зависит от числа потоков.
+ * <p>
+ * Запуск: {@code mvn -Pperf test-compile exec:exec@generate-dataset
+ * -Dgenerator.args="--students=1000000 --avatars=100000 --truncate"}
+ */
+public final class DatasetGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    static final int CHUNK_SIZE = 50_000;
+    private static final int PREVIEW_WIDTH = 100;
+    private static final int IMAGE_SIZE = 256;
+
+    private static final String[] FIRST_NAMES = {
+            "Harry", "Hermione", "Ron", "Ginny", "Neville", "Luna", "Draco", "Cho",
+            "Cedric", "Fred", "George", "Percy", "Oliver", "Katie", "Angelina", "Lee",
+            "Dean", "Seamus", "Lavender", "Parvati", "Padma", "Hannah", "Ernie", "Justin",
+            "Susan", "Terry", "Michael", "Anthony", "Marietta", "Pansy", "Vincent", "Gregory",
+            "Blaise", "Theodore", "Millicent", "Daphne", "Astoria", "Colin", "Dennis", "Romilda",
+            "Cormac", "Zacharias", "Lucy", "Rose", "Albus", "Scorpius", "James", "Lily",
+            "Teddy", "Victoire", "Dominique", "Louis", "Molly", "Roxanne", "Hugo", "Fleur",
+            "Gabrielle", "Viktor", "Remus", "Sirius", "Nymphadora", "Bill", "Charlie", "Arthur"};
+    private static final String CONSONANTS = "bcdfghklmnprstvwz";
+    private static final String VOWELS = "aeiou";
+    /** Слог фамилии: согласная + гласная, 85 вариантов */
+    private static final int SYLLABLES = CONSONANTS.length() * VOWELS.length();
+    /** Фамилия из трех или четырех слогов: 85^3 * (85 + 1) вариантов */
+    private static final long SURNAMES = (long) SYLLABLES * SYLLABLES * SYLLABLES * (SYLLABLES + 1);
+    static final long NAME_SPACE = FIRST_NAMES.length * SURNAMES;
+
+    private static final String[] HOUSES = {"Gryffindor", "Hufflepuff", "Ravenclaw", "Slytherin"};
+    private static final String[] COLORS = {"Red", "Yellow", "Blue", "Green", "Purple", "Orange",
+            "Silver", "Bronze", "Black", "White", "Scarlet", "Emerald"};
+    /** Распределение возрастов 16..25: большинство студентов младших курсов */
+    private static final int[] AGE_WEIGHTS = {22, 22, 20, 16, 8, 5, 3, 2, 1, 1};
+    private static final int NO_FACULTY_PERCENT = 5;
+
+    private static final String SECONDARY_INDEXES_SQL = """
+            SELECT i.indexrelid::regclass::text, pg_get_indexdef(i.indexrelid)
+            FROM pg_index i
+            WHERE i.indrelid IN ('faculty'::regclass, 'student'::regclass, 'avatar'::regclass,
+                                 'avatar_preview'::regclass)
+              AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.indexrelid
+                              AND c.contype IN ('p', 'u', 'x'))
+            """;
+
+    private final Options options;
+    private final long nameOffset;
+    private final long nameMultiplier;
+
+    private DatasetGenerator(Options options) {
+        this.options = options;
+        SplittableRandom random = new SplittableRandom(options.seed);
+        this.nameOffset = Math.floorMod(random.nextLong(), NAME_SPACE);
+        this.nameMultiplier = coprimeMultiplier(NAME_SPACE, random);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        long start = System.nanoTime();
+        new DatasetGenerator(options).run();
+        logger.info("Набор данных сгенерирован за {} мс", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void run() throws Exception {
+        if (options.students > NAME_SPACE) {
+            throw new IllegalArgumentException("Too many students, at most " + NAME_SPACE + " unique names");
+        }
+        if (options.avatars > options.students) {
+            throw new IllegalArgumentException("Avatars count exceeds students count");
+        }
+        try (Connection connection = connect()) {
+            prepare(connection);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(options.threads);
+        try {
+            List<String> indexes = options.keepIndexes ? List.of() : dropSecondaryIndexes();
+            try {
+                timed("faculty", options.faculties, this::loadFaculties);
+                timed("student", options.students, () -> loadStudents(executor));
+                List<Image> images = renderImages(executor);
+                timed("avatar", options.avatars, () -> loadAvatars(executor, images));
+            } finally {
+                recreateIndexes(executor, indexes);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("SELECT setval('faculty_seq', " + (options.faculties + 1) + ", false)");
+            statement.execute("SELECT setval('student_seq', " + (options.students + 1) + ", false)");
+            statement.execute("SELECT setval('avatar_id_seq', " + (options.avatars + 1) + ", false)");
+            statement.execute("ANALYZE faculty, student, avatar, avatar_preview");
+        }
+    }
+
+    private void prepare(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (options.truncate) {
+                logger.warn("Очистка таблиц faculty, student, avatar, avatar_preview");
+                statement.execute("TRUNCATE avatar_preview, avatar, student, faculty");
+                return;
+            }
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT (SELECT count(*) FROM student) + (SELECT count(*) FROM faculty)")) {
+                rs.next();
+                if (rs.getLong(1) > 0) {
+                    throw new IllegalStateException("Tables are not empty, pass --truncate to overwrite them");
+                }
+            }
+        }
+    }
+
+    /**
+     * Вторичные индексы (триграммный, по возрасту, по факультету и т.д.) на время
+     * загрузки удаляются и строятся заново одним проходом: поддерживать их построчно
+     * при COPY в несколько раз дольше. Индексы ограничений остаются на месте.
+     */
+    private List<String> dropSecondaryIndexes() throws SQLException {
+        List<String> definitions = new ArrayList<>();
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            List<String> names = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery(SECONDARY_INDEXES_SQL)) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                    definitions.add(rs.getString(2));
+                }
+            }
+            for (String name : names) {
+                statement.execute("DROP INDEX " + name);
+            }
+            logger.info("На время загрузки удалены индексы: {}", names);
+        }
+        return definitions;
+    }
+
+    private void recreateIndexes(ExecutorService executor, List<String> definitions) throws Exception {
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (String definition : definitions) {
+            futures.add(executor.submit(() -> {
+                try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+                    statement.execute(definition);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        logger.info("Восстановлено {} индексов за {} мс", definitions.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private long loadFaculties() throws Exception {
+        return copy("COPY faculty (id, name, color) FROM STDIN (FORMAT csv)", out -> {
+            for (int id = 1; id <= options.faculties; id++) {
+                String name = id <= HOUSES.length ? HOUSES[id - 1]
+                        : "House " + surname(id * nameMultiplier % SURNAMES);
+                out.row().append(id).append(',').append(name).append(',')
+                        .append(COLORS[(id - 1) % COLORS.length]).append('\n');
+            }
+        });
+    }
+
+    private long loadStudents(ExecutorService executor) throws Exception {
+        int chunks = (int) ((options.students + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        return runChunks(executor, chunks, chunk -> {
+            SplittableRandom random = chunkRandom("student", chunk);
+            long from = (long) chunk * CHUNK_SIZE + 1;
+            long to = Math.min(from + CHUNK_SIZE, options.students + 1);
+            return copy("COPY student (id, name, age, faculty_id) FROM STDIN (FORMAT csv)", out -> {
+                for (long id = from; id < to; id++) {
+                    StringBuilder row = out.row().append(id).append(',').append(studentName(id)).append(',')
+                            .append(age(random)).append(',');
+                    if (options.faculties > 0 && random.nextInt(100) >= NO_FACULTY_PERCENT) {
+                        row.append(random.nextInt(options.faculties) + 1);
+                    }
+                    row.append('\n');
+                }
+            });
+        });
+    }
+
+    /**
+     * Аватары назначаются разным студентам через перестановку id, изображение
+     * выбирается из пула с перекосом к первым: популярные картинки делят один файл,
+     * как это происходит в хранилище при загрузке одинаковых изображений.
+     */
+    private long loadAvatars(ExecutorService executor, List<Image> images) throws Exception {
+        if (options.avatars == 0) {
+            return 0;
+        }
+        long multiplier = coprimeMultiplier(options.students, chunkRandom("avatar-owner", 0));
+        int chunks = (int) ((options.avatars + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        return runChunks(executor, chunks, chunk -> {
+            SplittableRandom random = chunkRandom("avatar", chunk);
+            long from = (long) chunk * CHUNK_SIZE + 1;
+            long to = Math.min(from + CHUNK_SIZE, options.avatars + 1);
+            int[] imageIndexes = random.ints((int) (to - from), 0, Integer.MAX_VALUE)
+                    .map(value -> skewed(value, images.size()))
+                    .toArray();
+            try (Connection connection = connect()) {
+                connection.setAutoCommit(false);
+                long copied = copy(connection, "COPY avatar (id, student_id, file_path, file_size, media_type, "
+                        + "content_hash, width, height, preview_status) FROM STDIN (FORMAT csv)", out -> {
+                    for (long id = from; id < to; id++) {
+                        Image image = images.get(imageIndexes[(int) (id - from)]);
+                        long studentId = (id - 1) * multiplier % options.students + 1;
+                        out.row().append(id).append(',').append(studentId).append(',').append(image.path)
+                                .append(',').append(image.size).append(',').append(image.mediaType)
+                                .append(',').append(image.hash).append(',').append(image.width)
+                                .append(',').append(image.height).append(",READY\n");
+                    }
+                });
+                copy(connection, "COPY avatar_preview (avatar_id, data) FROM STDIN (FORMAT csv)", out -> {
+                    for (long id = from; id < to; id++) {
+                        out.row().append(id).append(",\\x")
+                                .append(images.get(imageIndexes[(int) (id - from)]).previewHex).append('\n');
+                    }
+                });
+                connection.commit();
+                return copied;
+            }
+        });
+    }
+
+    /**
+     * Пул различных изображений: каждое рисуется детерминированно по seed и номеру,
+     * сохраняется через {@link AvatarStorage} в ту же раскладку, что и при загрузке
+     * через API, а превью строится {@link ThumbnailEngine}, поэтому при старте
+     * приложения генерировать нечего.
+     */
+    private List<Image> renderImages(ExecutorService executor) throws Exception {
+        int count = (int) Math.min(options.images, Math.max(options.avatars, 1));
+        AvatarStorage storage = new AvatarStorage(options.avatarsFolder);
+        ThumbnailEngine thumbnailEngine = new ThumbnailEngine();
+        long start = System.nanoTime();
+        List<Future<Image>> futures = IntStream.range(0, count)
+                .mapToObj(i -> executor.submit(() -> renderImage(storage, thumbnailEngine, i)))
+                .toList();
+        List<Image> images = new ArrayList<>(count);
+        for (Future<Image> future : futures) {
+            images.add(future.get());
+        }
+        logger.info("Сохранено {} изображений в {} за {} мс", count, options.avatarsFolder,
+                (System.nanoTime() - start) / 1_000_000);
+        return images;
+    }
+
+    private Image renderImage(AvatarStorage storage, ThumbnailEngine thumbnailEngine, int index) throws IOException {
+        SplittableRandom random = chunkRandom("image", index);
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0x1000000)),
+                    IMAGE_SIZE, IMAGE_SIZE, new Color(random.nextInt(0x1000000))));
+            graphics.fillRect(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+            for (int i = 0; i < 6; i++) {
+                graphics.setColor(new Color(random.nextInt(0x1000000)));
+                int size = 24 + random.nextInt(IMAGE_SIZE / 2);
+                graphics.fillOval(random.nextInt(IMAGE_SIZE - size), random.nextInt(IMAGE_SIZE - size), size, size);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        StoredContent content = storage.store(new ByteArrayInputStream(png.toByteArray()), Long.MAX_VALUE, Long.MAX_VALUE);
+        byte[] preview = thumbnailEngine.createThumbnail(content.path(), PREVIEW_WIDTH);
+        return new Image(content.path().toString(), content.size(), content.image().mediaType(), content.hash(),
+                content.image().width(), content.image().height(), HexFormat.of().formatHex(preview));
+    }
+
+    private long runChunks(ExecutorService executor, int chunks, ChunkTask task) throws Exception {
+        List<Future<Long>> futures = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int current = chunk;
+            futures.add(executor.submit(() -> task.load(current)));
+        }
+        long total = 0;
+        for (Future<Long> future : futures) {
+            total += future.get();
+        }
+        return total;
+    }
+
+    private void timed(String table, long expected, LoadTask task) throws Exception {
+        long start = System.nanoTime();
+        long rows = task.load();
+        long millis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+        if (rows != expected) {
+            throw new IllegalStateException("Table " + table + ": expected " + expected + " rows, copied " + rows);
+        }
+        logger.info("{}: загружено {} строк за {} мс ({} строк/с)", table, rows, millis, rows * 1000 / millis);
+    }
+
+    /**
+     * Уникальное имя студента: номер отображается в пространство имен биекцией
+     * {@code (id * multiplier + offset) mod NAME_SPACE}, а номер раскладывается на имя
+     * и слоги фамилии, поэтому у разных id имена никогда не совпадают.
+     */
+    String studentName(long id) {
+        long index = studentNameIndex(id);
+        return FIRST_NAMES[(int) (index % FIRST_NAMES.length)] + ' ' + surname(index / FIRST_NAMES.length);
+    }
+
+    private long studentNameIndex(long id) {
+        return ((id - 1) * nameMultiplier + nameOffset) % NAME_SPACE;
+    }
+
+    private static String surname(long index) {
+        StringBuilder surname = new StringBuilder(8);
+        for (int i = 0; i < 3; i++) {
+            appendSyllable(surname, (int) (index % SYLLABLES));
+            index /= SYLLABLES;
+        }
+        if (index > 0) {
+            appendSyllable(surname, (int) (index - 1));
+        }
+        surname.setCharAt(0, Character.toUpperCase(surname.charAt(0)));
+        return surname.toString();
+    }
+
+    private static void appendSyllable(StringBuilder target, int syllable) {
+        target.append(CONSONANTS.charAt(syllable / VOWELS.length())).append(VOWELS.charAt(syllable % VOWELS.length()));
+    }
+
+    private static int age(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < AGE_WEIGHTS.length; i++) {
+            roll -= AGE_WEIGHTS[i];
+            if (roll < 0) {
+                return 16 + i;
+            }
+        }
+        return 16 + AGE_WEIGHTS.length - 1;
+    }
+
+    /** Номер из [0, bound) с перекосом к началу: квадрат равномерной величины */
+    private static int skewed(int value, int bound) {
+        double u = (double) value / Integer.MAX_VALUE;
+        return (int) (u * u * bound);
+    }
+
+    private SplittableRandom chunkRandom(String stream, long chunk) {
+        return new SplittableRandom(options.seed * 0x9E3779B97F4A7C15L + stream.hashCode() * 31L + chunk);
+    }
+
+    /**
+     * Множитель, взаимно простой с модулем, задает перестановку {@code [0, modulus)}.
+     * Он меньше 2^31, а модуль меньше {@link #NAME_SPACE}, так что произведение
+     * {@code (id - 1) * multiplier} помещается в long без переполнения.
+     */
+    private static long coprimeMultiplier(long modulus, SplittableRandom random) {
+        long candidate = random.nextLong(1L << 30, 1L << 31) | 1;
+        while (gcd(candidate, modulus) != 1) {
+            candidate += 2;
+        }
+        return candidate;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private long copy(String sql, CopyBody body) throws Exception {
+        try (Connection connection = connect()) {
+            return copy(connection, sql, body);
+        }
+    }
+
+    private static long copy(Connection connection, String sql, CopyBody body) throws Exception {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+        try {
+            CopyWriter writer = new CopyWriter(copyIn);
+            body.write(writer);
+            writer.flush();
+            return copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(options.url, options.user, options.password);
+    }
+
+    private record Image(String path, long size, String mediaType, String hash, int width, int height,
+                         String previewHex) {
+    }
+
+    /**
+     * Буфер строк COPY: данные уходят на сервер порциями по {@value #FLUSH_SIZE} символов,
+     * поэтому блок с превью не собирается в памяти целиком.
+     */
+    private static final class CopyWriter {
+        private static final int FLUSH_SIZE = 1 << 20;
+
+        private final CopyIn copyIn;
+        private final StringBuilder buffer = new StringBuilder(FLUSH_SIZE + 64 * 1024);
+
+        private CopyWriter(CopyIn copyIn) {
+            this.copyIn = copyIn;
+        }
+
+        StringBuilder row() throws SQLException {
+            if (buffer.length() >= FLUSH_SIZE) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void flush() throws SQLException {
+            byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(data, 0, data.length);
+            buffer.setLength(0);
+        }
+    }
+
+    @FunctionalInterface
+    private interface CopyBody {
+        void write(CopyWriter out) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface ChunkTask {
+        long load(int chunk) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface LoadTask {
+        long load() throws Exception;
+    }
+
+    private record Options(String url, String user, String password, long students, int faculties, long avatars,
+                           int images, long seed, String avatarsFolder, int threads, boolean truncate,
+                           boolean keepIndexes) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown argument: " + arg);
+                }
+                int eq = arg.indexOf('=');
+                values.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+            }
+            Options options = new Options(
+                    values.getOrDefault("url", "jdbc:postgresql://localhost:5432/hogwarts"),
+                    values.getOrDefault("user", "student"),
+                    values.getOrDefault("password", "chocolatefrog"),
+                    Long.parseLong(values.getOrDefault("students", "1000000")),
+                    Integer.parseInt(values.getOrDefault("faculties", "10")),
+                    Long.parseLong(values.getOrDefault("avatars", "100000")),
+                    Integer.parseInt(values.getOrDefault("images", "500")),
+                    Long.parseLong(values.getOrDefault("seed", "42")),
+                    values.getOrDefault("avatars-folder", "/avatars"),
+                    Integer.parseInt(values.getOrDefault("threads",
+                            String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                    Boolean.parseBoolean(values.getOrDefault("truncate", "false")),
+                    Boolean.parseBoolean(values.getOrDefault("keep-indexes", "false")));
+            if (options.students < 0 || options.faculties < 0 || options.avatars < 0
+                    || options.images < 1 || options.threads < 1) {
+                throw new IllegalArgumentException("Counts must be non-negative, images and threads positive");
+            }
+            logger.info("Параметры генерации: {}", options.withoutPassword());
+            return options;
+        }
+
+        private String withoutPassword() {
+            return "url=%s, students=%d, faculties=%d, avatars=%d, images=%d, seed=%d, threads=%d, truncate=%s"
+                    .formatted(url, students, faculties, avatars, images, seed, threads, truncate);
+        }
+    }
+}
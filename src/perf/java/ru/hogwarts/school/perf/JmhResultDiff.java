@@ -0,0 +1,71 @@
+package ru.hogwarts.school.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Сравнение двух JSON-результатов JMH (например, до и после коммита): для каждого
+ * бенчмарка с параметрами печатает оценки, изменение в процентах и аллокации на
+ * операцию из профилировщика gc.
+ * {@code mvn -Pperf test-compile exec:exec@jmh-diff -Djmh.baseline=base.json -Djmh.result=new.json}
+ */
+public final class JmhResultDiff {
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private JmhResultDiff() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: JmhResultDiff <baseline.json> <result.json>");
+        }
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> result = read(new File(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s %12s %12s%n",
+                "Benchmark", "Baseline", "Result", "Change", "B/op base", "B/op new");
+        Set<String> keys = new TreeSet<>(baseline.keySet());
+        keys.addAll(result.keySet());
+        for (String key : keys) {
+            JsonNode before = baseline.get(key);
+            JsonNode after = result.get(key);
+            double scoreBefore = score(before);
+            double scoreAfter = score(after);
+            String change = before == null || after == null ? "-"
+                    : String.format(Locale.ROOT, "%+.1f%%", (scoreAfter - scoreBefore) / scoreBefore * 100);
+            System.out.printf(Locale.ROOT, "%-70s %14s %14s %9s %12s %12s%n", key,
+                    format(before, scoreBefore), format(after, scoreAfter), change,
+                    allocation(before), allocation(after));
+        }
+    }
+
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> runs = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText()
+                    .replace("ru.hogwarts.school.perf.", ""));
+            run.path("params").fields().forEachRemaining(param ->
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText()));
+            runs.put(key.toString(), run);
+        }
+        return runs;
+    }
+
+    private static double score(JsonNode run) {
+        return run == null ? Double.NaN : run.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static String format(JsonNode run, double score) {
+        return run == null ? "-" : String.format(Locale.ROOT, "%.3f %s", score,
+                run.path("primaryMetric").path("scoreUnit").asText());
+    }
+
+    private static String allocation(JsonNode run) {
+        JsonNode metric = run == null ? null : run.path("secondaryMetrics").get(ALLOCATION_METRIC);
+        return metric == null ? "-" : String.format(Locale.ROOT, "%.0f", metric.path("score").asDouble());
+    }
+}
@@ -0,0 +1,532 @@
+package ru.hogwarts.school.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный тест HTTP API по открытой модели: запросы отправляются с постоянной
+ * частотой по расписанию, не дожидаясь ответов, а задержка отсчитывается от
+ * запланированного момента отправки. Если приложение или сам генератор отстают,
+ * ожидание в очереди попадает в гистограмму, а не исчезает из замера
+ * (coordinated omission). Отдельно пишется время обслуживания от фактической отправки.
+ * <p>
+ * Смесь запросов задается файлом (по умолчанию {@code load/default-mix.txt}), ID
+ * студентов, факультетов и аватаров берутся из работающего приложения. Частоты
+ * {@code --rates} прогоняются ступенями; наибольшая ступень, на которой достигнута
+ * заданная частота без ошибок и с p99 не выше {@code --slo-p99}, считается
+ * максимальной устойчивой пропускной способностью. Отчет с перцентилями и
+ * сжатыми гистограммами HdrHistogram пишется в {@code target/load-reports/},
+ * с {@code --baseline=report.json} печатается сравнение с прошлым прогоном.
+ * <p>
+ * Запуск против локально поднятого приложения:
+ * {@code mvn -Pperf test-compile exec:exec@load-test
+ * -Dload.args="--base-url=http://localhost:8080 --rates=100,200,400 --duration=PT30S"}
+ */
+public final class LoadTest {
+    private static final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final double SUSTAINED_RATE_SHARE = 0.95;
+    private static final String AVATAR_BODY = "@avatar";
+    private static final String MULTIPART_BOUNDARY = "load-test-boundary";
+    private static final int AVATAR_VARIANTS = 64;
+
+    private final Options options;
+    private final List<MixEntry> mix;
+    private final HttpClient client;
+    private final SplittableRandom random;
+    private Targets targets;
+    private List<byte[]> avatarBodies;
+
+    private LoadTest(Options options, List<MixEntry> mix) {
+        this.options = options;
+        this.mix = mix;
+        this.random = new SplittableRandom(options.seed);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        LoadTest loadTest = new LoadTest(options, MixEntry.parseAll(readMix(options.mix)));
+        loadTest.run();
+    }
+
+    private void run() throws Exception {
+        targets = Targets.discover(client, options.baseUrl, options.discover);
+        avatarBodies = renderAvatars();
+        System.out.printf("Цели: %d студентов, %d с аватаром, %d факультетов%n",
+                targets.studentIds.length, targets.avatarStudentIds.length, targets.faculties.size());
+
+        if (!options.warmup.isZero()) {
+            System.out.printf("Прогрев %s на %d запросов/с%n", options.warmup, options.rates.get(0));
+            runStage(options.rates.get(0), options.warmup);
+        }
+        List<StageResult> stages = new ArrayList<>();
+        for (int rate : options.rates) {
+            StageResult stage = runStage(rate, options.duration);
+            stages.add(stage);
+            printStage(stage);
+        }
+
+        ObjectNode report = report(stages);
+        Path dir = Path.of(options.reportDir,
+                LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+        Files.createDirectories(dir);
+        Path file = dir.resolve("report.json");
+        objectMapper.writeValue(file.toFile(), report);
+        System.out.println("Отчет: " + file.toAbsolutePath());
+        if (options.baseline != null) {
+            compare(objectMapper.readTree(Path.of(options.baseline).toFile()), report);
+        }
+    }
+
+    /**
+     * Одна ступень: планировщик выпускает запросы в моменты start + i / rate.
+     * При отставании он отправляет просроченные запросы подряд, но их задержка все
+     * равно считается от запланированного момента. Число запросов в полете
+     * ограничено {@code --max-in-flight}; не отправленные из-за лимита считаются ошибками.
+     */
+    private StageResult runStage(int rate, Duration duration) throws InterruptedException {
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        mix.forEach(entry -> stats.put(entry.name, new EndpointStats()));
+        int totalWeight = mix.stream().mapToInt(MixEntry::weight).sum();
+        Semaphore inFlight = new Semaphore(options.maxInFlight);
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = duration.toNanos() / intervalNanos;
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intended = start + i * intervalNanos;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            MixEntry entry = pick(totalWeight);
+            EndpointStats endpoint = stats.get(entry.name);
+            if (!inFlight.tryAcquire()) {
+                endpoint.dropped.increment();
+                continue;
+            }
+            long sent = System.nanoTime();
+            client.sendAsync(request(entry), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        endpoint.record(intended, sent, System.nanoTime(),
+                                response == null ? -1 : response.statusCode(), error);
+                        inFlight.release();
+                    });
+        }
+        long scheduledEnd = System.nanoTime();
+        if (!inFlight.tryAcquire(options.maxInFlight, options.timeout.toMillis() + 1000, TimeUnit.MILLISECONDS)) {
+            System.out.println("Не все ответы получены к концу ступени");
+        } else {
+            inFlight.release(options.maxInFlight);
+        }
+        long elapsed = System.nanoTime() - start;
+        return new StageResult(rate, total, scheduledEnd - start, elapsed, stats);
+    }
+
+    private MixEntry pick(int totalWeight) {
+        int roll = random.nextInt(totalWeight);
+        for (MixEntry entry : mix) {
+            roll -= entry.weight;
+            if (roll < 0) {
+                return entry;
+            }
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private HttpRequest request(MixEntry entry) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(options.baseUrl + expand(entry.path)))
+                .timeout(options.timeout);
+        if (entry.body == null) {
+            return builder.method(entry.method, HttpRequest.BodyPublishers.noBody()).build();
+        }
+        if (AVATAR_BODY.equals(entry.body)) {
+            return builder.header("Content-Type", "multipart/form-data; boundary=" + MULTIPART_BOUNDARY)
+                    .method(entry.method, HttpRequest.BodyPublishers.ofByteArray(
+                            avatarBodies.get(random.nextInt(avatarBodies.size()))))
+                    .build();
+        }
+        return builder.header("Content-Type", "application/json")
+                .method(entry.method, HttpRequest.BodyPublishers.ofString(expand(entry.body)))
+                .build();
+    }
+
+    private String expand(String template) {
+        if (template.indexOf('{') < 0) {
+            return template;
+        }
+        StringBuilder result = new StringBuilder(template.length() + 16);
+        int from = 0;
+        int open;
+        while ((open = template.indexOf('{', from)) >= 0) {
+            int close = template.indexOf('}', open);
+            String value = close < 0 ? null : placeholder(template.substring(open + 1, close));
+            result.append(template, from, open);
+            if (value == null) {
+                // Фигурные скобки JSON-тела не являются подстановкой
+                result.append('{');
+                from = open + 1;
+            } else {
+                result.append(value);
+                from = close + 1;
+            }
+        }
+        return result.append(template, from, template.length()).toString();
+    }
+
+    private String placeholder(String name) {
+        return switch (name) {
+            case "studentId" -> String.valueOf(targets.studentIds[random.nextInt(targets.studentIds.length)]);
+            case "avatarStudentId" -> String.valueOf(targets.avatarStudentIds.length == 0
+                    ? targets.studentIds[random.nextInt(targets.studentIds.length)]
+                    : targets.avatarStudentIds[random.nextInt(targets.avatarStudentIds.length)]);
+            case "facultyId" -> String.valueOf(targets.faculties.get(random.nextInt(targets.faculties.size())).id);
+            case "color" -> encode(targets.faculties.get(random.nextInt(targets.faculties.size())).color);
+            case "namePrefix" -> encode(targets.namePrefixes.get(random.nextInt(targets.namePrefixes.size())));
+            case "age" -> String.valueOf(16 + random.nextInt(10));
+            case "uuid" -> new UUID(random.nextLong(), random.nextLong()).toString();
+            default -> null;
+        };
+    }
+
+    private static String encode(String value) {
+        return java.net.URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /** Набор различных PNG: одинаковые загрузки хранилище не копирует, поэтому файлы разные */
+    private List<byte[]> renderAvatars() throws IOException {
+        if (mix.stream().noneMatch(entry -> AVATAR_BODY.equals(entry.body))) {
+            return List.of();
+        }
+        List<byte[]> bodies = new ArrayList<>(AVATAR_VARIANTS);
+        for (int i = 0; i < AVATAR_VARIANTS; i++) {
+            BufferedImage image = new BufferedImage(128, 128, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            graphics.setColor(new Color(random.nextInt(0x1000000)));
+            graphics.fillRect(0, 0, 128, 128);
+            graphics.setColor(new Color(random.nextInt(0x1000000)));
+            graphics.fillOval(random.nextInt(64), random.nextInt(64), 64, 64);
+            graphics.dispose();
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", png);
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            body.writeBytes(("--" + MULTIPART_BOUNDARY + "\r\n"
+                    + "Content-Disposition: form-data; name=\"avatar\"; filename=\"load-" + i + ".png\"\r\n"
+                    + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.writeBytes(png.toByteArray());
+            body.writeBytes(("\r\n--" + MULTIPART_BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            bodies.add(body.toByteArray());
+        }
+        return bodies;
+    }
+
+    private void printStage(StageResult stage) {
+        System.out.printf("%n=== %d запросов/с: отправлено %d за %.1f с, достигнуто %.1f запросов/с, %s ===%n",
+                stage.rate, stage.scheduled, stage.scheduledNanos / 1e9, stage.achievedRate(),
+                sustained(stage) ? "устойчиво" : "НЕ устойчиво");
+        System.out.printf("%-24s %8s %7s %9s %9s %9s %9s %9s %10s%n",
+                "endpoint", "count", "errors", "rps", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        stage.stats.forEach((name, stats) -> {
+            Histogram histogram = stats.corrected;
+            System.out.printf(Locale.ROOT, "%-24s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %10.2f%n",
+                    name, histogram.getTotalCount(), stats.errorCount(),
+                    histogram.getTotalCount() / (stage.elapsedNanos / 1e9),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+            if (stats.firstError.get() != null) {
+                System.out.println("    первая ошибка: " + stats.firstError.get());
+            }
+        });
+    }
+
+    private boolean sustained(StageResult stage) {
+        long errors = stage.stats.values().stream().mapToLong(EndpointStats::errorCount).sum();
+        boolean withinSlo = options.sloP99 == null || stage.stats.values().stream()
+                .allMatch(stats -> stats.corrected.getTotalCount() == 0
+                        || stats.corrected.getValueAtPercentile(99) <= options.sloP99.toNanos() / 1000);
+        return errors == 0 && withinSlo && stage.achievedRate() >= stage.rate * SUSTAINED_RATE_SHARE;
+    }
+
+    private ObjectNode report(List<StageResult> stages) {
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("baseUrl", options.baseUrl);
+        report.put("mix", options.mix);
+        report.put("seed", options.seed);
+        report.put("duration", options.duration.toString());
+        report.put("sloP99", options.sloP99 == null ? null : options.sloP99.toString());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("maxSustainedRate", stages.stream().filter(this::sustained)
+                .mapToInt(StageResult::rate).max().orElse(0));
+        ArrayNode stageNodes = report.putArray("stages");
+        for (StageResult stage : stages) {
+            ObjectNode stageNode = stageNodes.addObject();
+            stageNode.put("rate", stage.rate);
+            stageNode.put("scheduled", stage.scheduled);
+            stageNode.put("achievedRate", stage.achievedRate());
+            stageNode.put("sustained", sustained(stage));
+            ObjectNode endpoints = stageNode.putObject("endpoints");
+            stage.stats.forEach((name, stats) -> {
+                ObjectNode endpoint = endpoints.putObject(name);
+                endpoint.put("count", stats.corrected.getTotalCount());
+                endpoint.put("errors", stats.errorCount());
+                endpoint.put("throughput", stats.corrected.getTotalCount() / (stage.elapsedNanos / 1e9));
+                endpoint.set("latencyMs", percentiles(stats.corrected));
+                endpoint.set("serviceTimeMs", percentiles(stats.service));
+                ObjectNode statuses = endpoint.putObject("statuses");
+                new TreeMap<>(stats.statuses).forEach((status, count) -> statuses.put(status, count.sum()));
+                endpoint.put("histogram", encode(stats.corrected));
+            });
+        }
+        return report;
+    }
+
+    private static ObjectNode percentiles(Histogram histogram) {
+        ObjectNode node = objectMapper.createObjectNode();
+        for (double percentile : PERCENTILES) {
+            node.put("p" + (percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : percentile),
+                    millis(histogram.getValueAtPercentile(percentile)));
+        }
+        node.put("max", millis(histogram.getMaxValue()));
+        node.put("mean", histogram.getMean() / 1000);
+        return node;
+    }
+
+    /** Сжатая гистограмма в Base64: по ней можно пересчитать любые перцентили позже */
+    private static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    private static void compare(JsonNode baseline, JsonNode report) {
+        System.out.printf("%nСравнение с %s (seed %s), p99 мс и пропускная способность%n",
+                baseline.path("mix").asText(), baseline.path("seed").asText());
+        System.out.printf("Максимальная устойчивая частота: %d -> %d%n",
+                baseline.path("maxSustainedRate").asInt(), report.path("maxSustainedRate").asInt());
+        Map<Integer, JsonNode> baselineStages = new HashMap<>();
+        baseline.path("stages").forEach(stage -> baselineStages.put(stage.path("rate").asInt(), stage));
+        for (JsonNode stage : report.path("stages")) {
+            JsonNode before = baselineStages.get(stage.path("rate").asInt());
+            if (before == null) {
+                continue;
+            }
+            System.out.printf("--- %d запросов/с%n", stage.path("rate").asInt());
+            stage.path("endpoints").fields().forEachRemaining(endpoint -> {
+                JsonNode old = before.path("endpoints").path(endpoint.getKey());
+                if (old.isMissingNode()) {
+                    return;
+                }
+                double p99Before = old.path("latencyMs").path("p99").asDouble();
+                double p99After = endpoint.getValue().path("latencyMs").path("p99").asDouble();
+                System.out.printf(Locale.ROOT, "%-24s p99 %9.2f -> %9.2f (%+.1f%%)  rps %8.1f -> %8.1f%n",
+                        endpoint.getKey(), p99Before, p99After,
+                        p99Before == 0 ? 0 : (p99After - p99Before) / p99Before * 100,
+                        old.path("throughput").asDouble(), endpoint.getValue().path("throughput").asDouble());
+            });
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static String readMix(String location) throws IOException {
+        if (location.startsWith("classpath:")) {
+            try (InputStream in = LoadTest.class.getClassLoader().getResourceAsStream(location.substring(10))) {
+                if (in == null) {
+                    throw new IllegalArgumentException("Mix not found: " + location);
+                }
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        return Files.readString(Path.of(location));
+    }
+
+    private static final class EndpointStats {
+        final Histogram corrected = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final Histogram service = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+        final LongAdder failed = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+        final AtomicReference<String> firstError = new AtomicReference<>();
+
+        void record(long intended, long sent, long now, int status, Throwable error) {
+            corrected.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(now - intended), HIGHEST_TRACKABLE_MICROS));
+            service.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(now - sent), HIGHEST_TRACKABLE_MICROS));
+            String key = error != null ? error.getClass().getSimpleName() : String.valueOf(status);
+            statuses.computeIfAbsent(key, k -> new LongAdder()).increment();
+            if (error != null || status >= 400) {
+                failed.increment();
+                firstError.compareAndSet(null, error != null ? String.valueOf(error) : "HTTP " + status);
+            }
+        }
+
+        long errorCount() {
+            return failed.sum() + dropped.sum();
+        }
+    }
+
+    private record StageResult(int rate, long scheduled, long scheduledNanos, long elapsedNanos,
+                               Map<String, EndpointStats> stats) {
+        double achievedRate() {
+            long completed = stats.values().stream().mapToLong(s -> s.corrected.getTotalCount()).sum();
+            return completed / (scheduledNanos / 1e9);
+        }
+    }
+
+    private record MixEntry(int weight, String name, String method, String path, String body) {
+
+        static List<MixEntry> parseAll(String text) {
+            List<MixEntry> entries = new ArrayList<>();
+            for (String line : text.split("\n")) {
+                String trimmed = line.strip();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = trimmed.split("\\s+", 5);
+                if (parts.length < 4) {
+                    throw new IllegalArgumentException("Invalid mix line: " + line);
+                }
+                int weight = Integer.parseInt(parts[0]);
+                if (weight <= 0) {
+                    throw new IllegalArgumentException("Weight must be positive: " + line);
+                }
+                entries.add(new MixEntry(weight, parts[1], parts[2].toUpperCase(Locale.ROOT), parts[3],
+                        parts.length == 5 ? parts[4] : null));
+            }
+            if (entries.isEmpty()) {
+                throw new IllegalArgumentException("Mix is empty");
+            }
+            return entries;
+        }
+    }
+
+    private record Faculty(long id, String color) {
+    }
+
+    /** ID для подстановок, собранные из ленты студентов и списка аватаров */
+    private record Targets(long[] studentIds, long[] avatarStudentIds, List<Faculty> faculties,
+                           List<String> namePrefixes) {
+
+        static Targets discover(HttpClient client, String baseUrl, int limit) throws IOException, InterruptedException {
+            List<Long> students = new ArrayList<>();
+            Map<Long, Faculty> faculties = new TreeMap<>();
+            Set<String> prefixes = new TreeSet<>();
+            String cursor = null;
+            do {
+                JsonNode page = get(client, baseUrl + "/student?size=100"
+                        + (cursor == null ? "" : "&cursor=" + encode(cursor)));
+                for (JsonNode student : page.path("content")) {
+                    students.add(student.path("id").asLong());
+                    String name = student.path("name").asText();
+                    if (name.length() >= 3) {
+                        prefixes.add(name.substring(0, 3));
+                    }
+                    JsonNode faculty = student.path("faculty");
+                    if (faculty.hasNonNull("id")) {
+                        faculties.put(faculty.path("id").asLong(),
+                                new Faculty(faculty.path("id").asLong(), faculty.path("color").asText()));
+                    }
+                }
+                cursor = page.path("nextCursor").isTextual() ? page.path("nextCursor").asText() : null;
+            } while (cursor != null && students.size() < limit);
+
+            List<Long> avatars = new ArrayList<>();
+            Long after = null;
+            do {
+                JsonNode page = get(client, baseUrl + "/avatar?size=100" + (after == null ? "" : "&after=" + after));
+                page.path("content").forEach(avatar -> avatars.add(avatar.path("studentId").asLong()));
+                after = page.path("hasNext").asBoolean() ? page.path("nextCursor").asLong() : null;
+            } while (after != null && avatars.size() < limit);
+
+            if (students.isEmpty() || faculties.isEmpty()) {
+                throw new IllegalStateException("No students with faculties found at " + baseUrl
+                        + ", fill the database first (DatasetGenerator)");
+            }
+            return new Targets(students.stream().mapToLong(Long::longValue).toArray(),
+                    avatars.stream().mapToLong(Long::longValue).toArray(),
+                    List.copyOf(faculties.values()), List.copyOf(prefixes));
+        }
+
+        private static JsonNode get(HttpClient client, String url) throws IOException, InterruptedException {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new UncheckedIOException(new IOException("GET " + url + " -> HTTP " + response.statusCode()));
+            }
+            return objectMapper.readTree(response.body());
+        }
+    }
+
+    private record Options(String baseUrl, String mix, List<Integer> rates, Duration duration, Duration warmup,
+                           Duration timeout, Duration sloP99, int maxInFlight, int discover, long seed,
+                           String reportDir, String baseline) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                    throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+                }
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+            List<Integer> rates = Arrays.stream(values.getOrDefault("rates", "50,100,200").split(","))
+                    .map(String::strip).map(Integer::parseInt).toList();
+            if (rates.stream().anyMatch(rate -> rate <= 0 || rate > 1_000_000)) {
+                throw new IllegalArgumentException("Rates must be in 1..1000000: " + rates);
+            }
+            return new Options(
+                    values.getOrDefault("base-url", "http://localhost:8080").replaceAll("/+$", ""),
+                    values.getOrDefault("mix", "classpath:load/default-mix.txt"),
+                    rates,
+                    Duration.parse(values.getOrDefault("duration", "PT30S")),
+                    Duration.parse(values.getOrDefault("warmup", "PT10S")),
+                    Duration.parse(values.getOrDefault("timeout", "PT10S")),
+                    values.containsKey("slo-p99") ? Duration.parse(values.get("slo-p99")) : null,
+                    Integer.parseInt(values.getOrDefault("max-in-flight", "10000")),
+                    Integer.parseInt(values.getOrDefault("discover", "2000")),
+                    Long.parseLong(values.getOrDefault("seed", "42")),
+                    values.getOrDefault("report-dir", "target/load-reports"),
+                    values.get("baseline"));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ru.hogwarts.school.perf;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.hogwarts.school.SchoolApplication;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Вызовы {@link StudentRepository} на встроенной H2 в режиме PostgreSQL: полный путь
+ * Spring Data → Hibernate → JDBC → построение DTO. Планы запросов H2 отличаются
+ * от PostgreSQL, поэтому здесь сравниваются накладные расходы в JVM между коммитами,
+ * а планы на реальной БД проверяет QueryPlanTest.
+ * {@code mvn -Pperf test-compile exec:exec@jmh -Djmh.includes=RepositoryBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class RepositoryBenchmark {
+    private static final String[] FACULTIES = {"Gryffindor", "Hufflepuff", "Ravenclaw", "Slytherin"};
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"100000"})
+    public int students;
+
+    private ConfigurableApplicationContext context;
+    private StudentRepository studentRepository;
+    private Path avatarsFolder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarsFolder = Files.createTempDirectory("repository-benchmark-");
+        context = new SpringApplicationBuilder(SchoolApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.profiles.active=",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.liquibase.enabled=false",
+                        "--student.column-store.enabled=false",
+                        "--logging.level.ru.hogwarts.school=WARN",
+                        "--logging.level.org.springframework=WARN",
+                        "--logging.file.name=",
+                        "--path.to.avatars.folder=" + avatarsFolder);
+        studentRepository = context.getBean(StudentRepository.class);
+        seed(context.getBean(JdbcTemplate.class));
+    }
+
+    private void seed(JdbcTemplate jdbcTemplate) {
+        for (int i = 0; i < FACULTIES.length; i++) {
+            jdbcTemplate.update("INSERT INTO faculty (id, name, color) VALUES (?, ?, ?)",
+                    i + 1, FACULTIES[i], "Color" + i);
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        List<Object[]> rows = IntStream.rangeClosed(1, students)
+                .mapToObj(id -> new Object[]{id, "Student " + id, 16 + random.nextInt(10),
+                        random.nextInt(20) == 0 ? null : 1 + random.nextInt(FACULTIES.length)})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO student (id, name, age, faculty_id) VALUES (?, ?, ?, ?)", rows);
+        // Те же индексы, что создает Liquibase (кроме выражений по lower(name), которых нет в H2)
+        jdbcTemplate.execute("CREATE INDEX idx_student_age ON student (age, id)");
+        jdbcTemplate.execute("CREATE INDEX idx_student_faculty_id ON student (faculty_id, id)");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(avatarsFolder)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /** Случайные ID на поток; выбор занимает наносекунды против десятков микросекунд запроса */
+    @State(Scope.Thread)
+    public static class Ids {
+        private final SplittableRandom random = new SplittableRandom(7);
+
+        long next(RepositoryBenchmark benchmark) {
+            return 1 + random.nextInt(benchmark.students);
+        }
+    }
+
+    @Benchmark
+    public Optional<StudentDto> findDtoById(Ids ids) {
+        return studentRepository.findDtoById(ids.next(this));
+    }
+
+    @Benchmark
+    public List<StudentDto> findDtosAfter(Ids ids) {
+        return studentRepository.findDtosAfter(ids.next(this), Limit.of(PAGE_SIZE + 1));
+    }
+
+    @Benchmark
+    public List<StudentDto> findDtosByAge() {
+        return studentRepository.findDtosByAge(24);
+    }
+
+    @Benchmark
+    public List<StudentDto> findDtosByFacultyId() {
+        return studentRepository.findDtosByFacultyId(3L);
+    }
+
+    @Benchmark
+    public List<AgeCount> countByAge() {
+        return studentRepository.countByAge();
+    }
+
+    @Benchmark
+    public List<String> findNamesByLowerCasePrefix() {
+        return studentRepository.findNamesByLowerCasePrefix("student 99", "student 9:");
+    }
+}
@@ -0,0 +1,89 @@
+package ru.hogwarts.school.perf;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.AvatarInfoSlice;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.dto.StudentSlice;
+import ru.hogwarts.school.entities.Faculty;
+import ru.hogwarts.school.entities.Student;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Сериализация ответов контроллеров в JSON тем же {@link ObjectMapper}, что собирает
+ * Spring Boot: страница студентов, список факультетов и страница метаданных аватаров
+ * (бывший {@code Page<Avatar>}). Для сравнения — те же студенты в виде сущностей.
+ * {@code mvn -Pperf test-compile exec:exec@jmh -Djmh.includes=SerializationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private StudentSlice students;
+    private List<Student> studentEntities;
+    private List<FacultyDto> faculties;
+    private AvatarInfoSlice avatars;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        faculties = LongStream.rangeClosed(1, 4)
+                .mapToObj(id -> new FacultyDto(id, "Faculty " + id, "Color " + id))
+                .toList();
+        students = new StudentSlice(LongStream.rangeClosed(1, pageSize)
+                .mapToObj(id -> new StudentDto(id, "Student " + id, 16 + (int) (id % 10),
+                        faculties.get((int) (id % faculties.size()))))
+                .toList(), "eyJhIjoxfQ", null);
+        studentEntities = students.content().stream().map(SerializationBenchmark::toEntity).toList();
+        avatars = new AvatarInfoSlice(LongStream.rangeClosed(1, pageSize)
+                .mapToObj(id -> new AvatarInfo(id, id * 7, 40_000 + id, "image/jpeg"))
+                .toList(), (long) pageSize, true);
+    }
+
+    private static Student toEntity(StudentDto dto) {
+        Faculty faculty = new Faculty();
+        faculty.setId(dto.faculty().id());
+        faculty.setName(dto.faculty().name());
+        faculty.setColor(dto.faculty().color());
+        Student student = new Student();
+        student.setId(dto.id());
+        student.setName(dto.name());
+        student.setAge(dto.age());
+        student.setFaculty(faculty);
+        return student;
+    }
+
+    @Benchmark
+    public byte[] studentSlice() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public byte[] studentEntities() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(studentEntities);
+    }
+
+    @Benchmark
+    public byte[] faculties() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(faculties);
+    }
+
+    @Benchmark
+    public byte[] avatarSlice() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(avatars);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.hogwarts.school.perf;
+
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.entities.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.EntityCaches;
+import ru.hogwarts.school.service.StudentColumnStore;
+import ru.hogwarts.school.service.StudentService;
+import ru.hogwarts.school.service.StudentStatistics;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Java-часть конвейеров {@link StudentService}: прежние варианты через
+ * {@code findAll()} против текущих (фильтр по префиксу в БД, готовая статистика
+ * возрастов). Стратегии суммирования — в {@link SumBenchmark}. Репозиторий
+ * подменен заглушкой, так что измеряется только работа в JVM; стоимость запросов
+ * меряет {@link RepositoryBenchmark}.
+ * {@code mvn -Pperf test-compile exec:exec@jmh -Djmh.includes=StudentStreamBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StudentStreamBenchmark {
+    private static final String[] FIRST_NAMES = {"Albus", "Harry", "Hermione", "Arthur", "Ron", "Luna",
+            "Angelina", "Neville", "Draco", "Alicia", "Ginny", "Cedric"};
+
+    @Param({"10000", "100000"})
+    public int students;
+
+    private List<Student> allStudents;
+    private StudentService studentService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("ru.hogwarts.school"))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+        SplittableRandom random = new SplittableRandom(42);
+        allStudents = IntStream.range(0, students).mapToObj(i -> {
+            Student student = new Student();
+            student.setId((long) i + 1);
+            student.setName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " Student" + i);
+            student.setAge(16 + random.nextInt(10));
+            return student;
+        }).toList();
+
+        // Заглушка отдает то, что вернула бы БД: имена на "a" в порядке lower(name) и гистограмму возрастов
+        StudentRepository repository = mock(StudentRepository.class);
+        when(repository.findNamesByLowerCasePrefix("a", "b")).thenReturn(allStudents.stream()
+                .map(Student::getName)
+                .filter(name -> name.toLowerCase().startsWith("a"))
+                .sorted(Comparator.comparing(name -> name.toLowerCase()))
+                .toList());
+        Map<Integer, Long> ages = allStudents.stream()
+                .collect(Collectors.groupingBy(Student::getAge, Collectors.counting()));
+        when(repository.countByAge()).thenReturn(ages.entrySet().stream()
+                .map(entry -> new AgeCount(entry.getKey(), entry.getValue()))
+                .toList());
+
+        StudentStatistics statistics = new StudentStatistics(repository);
+        statistics.reconcile();
+        @SuppressWarnings("unchecked")
+        ObjectProvider<StudentColumnStore> columnStore = mock(ObjectProvider.class);
+        studentService = new StudentService(repository, statistics, columnStore, mock(EntityCaches.class));
+    }
+
+    @Benchmark
+    public List<String> namesStartingWithA_findAll() {
+        return allStudents.stream()
+                .map(Student::getName)
+                .filter(name -> name.toUpperCase().startsWith("A"))
+                .map(String::toUpperCase)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> namesStartingWithA_service() {
+        return studentService.getStudentNamesStartingWithA();
+    }
+
+    @Benchmark
+    public double averageAge_findAll() {
+        return allStudents.stream().mapToInt(Student::getAge).average().orElse(0.0);
+    }
+
+    @Benchmark
+    public double averageAge_service() {
+        return studentService.getAverageAgeWithFindAll();
+    }
+}
@@ -0,0 +1,44 @@
+package ru.hogwarts.school.perf;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Стратегии суммы чисел от 1 до 1 000 000, которые раньше замерялись через
+ * {@code System.currentTimeMillis()} прямо в {@code StudentService.calculateSum}.
+ * {@code mvn -Pperf test-compile exec:exec@jmh -Djmh.includes=SumBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SumBenchmark {
+
+    @Param({"1000000"})
+    public long limit;
+
+    @Benchmark
+    public long boxedIterate() {
+        return Stream.iterate(1L, a -> a + 1).limit(limit).reduce(0L, Long::sum);
+    }
+
+    @Benchmark
+    public long sequential() {
+        return LongStream.rangeClosed(1, limit).sum();
+    }
+
+    @Benchmark
+    public long parallel() {
+        return LongStream.rangeClosed(1, limit).parallel().sum();
+    }
+
+    @Benchmark
+    public long formula() {
+        return limit * (limit + 1) / 2;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.hogwarts.school.perf;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.service.ThumbnailEngine;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение генерации превью 100px: прежний способ (полное декодирование через
+ * {@code ImageIO.read} и {@code drawImage}) против {@link ThumbnailEngine}.
+ * Запуск с профилировщиком аллокаций:
+ * {@code mvn -Pperf test-compile exec:exec@jmh -Djmh.includes=ThumbnailBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class ThumbnailBenchmark {
+
+    @Param({"1600x1200", "6000x4000"})
+    public String size;
+
+    private final ThumbnailEngine thumbnailEngine = new ThumbnailEngine();
+    private Path source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] dimensions = size.split("x");
+        int width = Integer.parseInt(dimensions[0]);
+        int height = Integer.parseInt(dimensions[1]);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | ((x ^ y) & 0xFF));
+            }
+        }
+        source = Files.createTempFile("thumbnail-benchmark-", ".jpg");
+        ImageIO.write(image, "jpg", source.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+    }
+
+    @Benchmark
+    public byte[] legacyFullDecode() throws IOException {
+        try (
+                InputStream is = Files.newInputStream(source);
+                BufferedInputStream bis = new BufferedInputStream(is, 1024);
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ) {
+            BufferedImage image = ImageIO.read(bis);
+            int height = image.getHeight() / (image.getWidth() / 100);
+            BufferedImage preview = new BufferedImage(100, height, image.getType());
+            Graphics2D graphics2D = preview.createGraphics();
+            graphics2D.drawImage(image, 0, 0, 100, height, null);
+            graphics2D.dispose();
+            ImageIO.write(preview, "jpg", baos);
+            return baos.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public byte[] subsampledEngine() throws IOException {
+        return thumbnailEngine.createThumbnail(source, 100);
+    }
+}
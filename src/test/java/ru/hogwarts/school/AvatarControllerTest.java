@@ -0,0 +1,214 @@
+package ru.hogwarts.school;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import ru.hogwarts.school.dto.AvatarImportReport;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.entities.Avatar;
+import ru.hogwarts.school.entities.PreviewStatus;
+import ru.hogwarts.school.entities.Student;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"path.to.avatars.folder=target/test-avatars", "sql.profiler.fail-on-budget-exceeded=true"})
+class AvatarControllerTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @BeforeEach
+    void cleanDatabase() {
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+    }
+
+    @Test
+    void uploadAvatar_shouldGeneratePreviewInBackground() throws Exception {
+        Student student = createStudent("Avatar Student");
+
+        ResponseEntity<String> upload = restTemplate.postForEntity("/avatar/" + student.getId() + "/avatar",
+                multipart("avatar", "avatar.png", png(300, 200)), String.class);
+        assertEquals(HttpStatus.OK, upload.getStatusCode());
+
+        ResponseEntity<byte[]> preview = awaitPreview(student.getId());
+        assertEquals(HttpStatus.OK, preview.getStatusCode());
+        assertEquals(MediaType.IMAGE_PNG, preview.getHeaders().getContentType());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(preview.getBody()));
+        assertEquals(100, image.getWidth());
+    }
+
+    @Test
+    void findAvatar_shouldNotLoadStudent() throws Exception {
+        Student student = createStudent("Lazy Avatar Student");
+        restTemplate.postForEntity("/avatar/" + student.getId() + "/avatar",
+                multipart("avatar", "avatar.png", png(64, 64)), String.class);
+        awaitPreview(student.getId());
+
+        Avatar avatar = avatarRepository.findByStudentId(student.getId()).orElseThrow();
+
+        assertFalse(Hibernate.isInitialized(avatar.getStudent()));
+        assertTrue(avatarRepository.findAllByPreviewStatus(PreviewStatus.READY).stream()
+                .noneMatch(ready -> Hibernate.isInitialized(ready.getStudent())));
+    }
+
+    @Test
+    void uploadAvatar_shouldRemoveStoredFileWhenTransactionRollsBack() throws Exception {
+        byte[] content = png(123, 45);
+
+        ResponseEntity<String> upload = restTemplate.postForEntity("/avatar/" + Long.MAX_VALUE + "/avatar",
+                multipart("avatar", "avatar.png", content), String.class);
+
+        assertNotEquals(HttpStatus.OK, upload.getStatusCode());
+        assertFalse(Files.exists(storedPath(content)));
+    }
+
+    @Test
+    void importAvatars_shouldMatchStudentsByIdAndName() throws Exception {
+        Student byId = createStudent("Imported By Id");
+        createStudent("Imported By Name");
+
+        byte[] unmatched = png(50, 50);
+        byte[] superseded = png(60, 40);
+        // Хранилище переживает запуски тестов, а содержимое детерминировано
+        Files.deleteIfExists(storedPath(unmatched));
+        Files.deleteIfExists(storedPath(superseded));
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            addEntry(zip, "old/Imported By Name.png", superseded);
+            addEntry(zip, byId.getId() + ".png", png(200, 200));
+            addEntry(zip, "Imported By Name.png", png(150, 100));
+            addEntry(zip, "Nobody.png", unmatched);
+            addEntry(zip, "broken.png", new byte[]{1, 2, 3});
+        }
+
+        ResponseEntity<AvatarImportReport> response = restTemplate.postForEntity("/avatar/import",
+                multipart("archive", "avatars.zip", archive.toByteArray()), AvatarImportReport.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        AvatarImportReport report = response.getBody();
+        assertNotNull(report);
+        assertEquals(5, report.total());
+        assertEquals(2, report.imported());
+        assertEquals(AvatarImportResult.Status.SKIPPED, report.entries().get(0).status());
+        assertEquals(AvatarImportResult.Status.STUDENT_NOT_FOUND, report.entries().get(3).status());
+        assertEquals(AvatarImportResult.Status.REJECTED, report.entries().get(4).status());
+        assertFalse(Files.exists(storedPath(superseded)));
+        assertFalse(Files.exists(storedPath(unmatched)));
+
+        ResponseEntity<byte[]> preview = restTemplate.getForEntity(
+                "/avatar/" + byId.getId() + "/avatar/preview", byte[].class);
+        assertEquals(HttpStatus.OK, preview.getStatusCode());
+    }
+
+    @Test
+    void multipartLimits_shouldAllowLargeArchivesOnlyForImport() throws Exception {
+        Student student = createStudent("Limit Student");
+        byte[] noise = new byte[11 * 1024 * 1024];
+        new Random(42).nextBytes(noise);
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            addEntry(zip, "noise.bin", noise);
+        }
+
+        ResponseEntity<String> upload = restTemplate.postForEntity("/avatar/" + student.getId() + "/avatar",
+                multipart("avatar", "avatar.png", noise), String.class);
+        ResponseEntity<AvatarImportReport> imported = restTemplate.postForEntity("/avatar/import",
+                multipart("archive", "avatars.zip", archive.toByteArray()), AvatarImportReport.class);
+
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, upload.getStatusCode());
+        assertEquals(HttpStatus.OK, imported.getStatusCode());
+        assertEquals(AvatarImportResult.Status.REJECTED, imported.getBody().entries().get(0).status());
+    }
+
+    // Путь содержимого в хранилище аватаров (см. AvatarStorage.resolve)
+    private static Path storedPath(byte[] content) throws Exception {
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        return Path.of("target/test-avatars", hash.substring(0, 2), hash.substring(2, 4), hash + ".png");
+    }
+
+    private Student createStudent(String name) {
+        Student student = new Student();
+        student.setName(name);
+        student.setAge(20);
+        return restTemplate.postForEntity("/student", student, Student.class).getBody();
+    }
+
+    private ResponseEntity<byte[]> awaitPreview(Long studentId) throws InterruptedException {
+        ResponseEntity<byte[]> response = null;
+        for (int attempt = 0; attempt < 50; attempt++) {
+            response = restTemplate.getForEntity("/avatar/" + studentId + "/avatar/preview", byte[].class);
+            if (response.getStatusCode() != HttpStatus.ACCEPTED) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        return response;
+    }
+
+    private static HttpEntity<MultiValueMap<String, Object>> multipart(String part, String fileName, byte[] content) {
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add(part, new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+        return new HttpEntity<>(body, headers);
+    }
+
+    private static void addEntry(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            image.setRGB(x, x * height / width, 0xFF0000);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
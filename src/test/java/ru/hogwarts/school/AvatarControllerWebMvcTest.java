@@ -0,0 +1,210 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.hogwarts.school.controller.AvatarController;
+import ru.hogwarts.school.dto.AvatarFile;
+import ru.hogwarts.school.dto.AvatarImportReport;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.AvatarInfoSlice;
+import ru.hogwarts.school.dto.AvatarPreviewData;
+import ru.hogwarts.school.entities.PreviewStatus;
+import ru.hogwarts.school.service.AvatarImportService;
+import ru.hogwarts.school.service.AvatarRenditionCache;
+import ru.hogwarts.school.service.AvatarService;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AvatarController.class)
+class AvatarControllerWebMvcTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AvatarService avatarService;
+
+    @MockBean
+    private AvatarImportService avatarImportService;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = tempDir.resolve("avatar.png");
+        Files.writeString(file, "0123456789", StandardCharsets.US_ASCII);
+
+        AvatarFile avatar = new AvatarFile(file.toString(), "image/png", null);
+        when(avatarService.findAvatarFile(1L)).thenReturn(avatar);
+    }
+
+    @Test
+    void downloadAvatar_shouldReturnWholeFileWithValidators() throws Exception {
+        mockMvc.perform(get("/avatar/1/avatar"))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().string("0123456789"));
+    }
+
+    @Test
+    void downloadAvatar_shouldReturnNotModifiedForMatchingETag() throws Exception {
+        MvcResult first = mockMvc.perform(get("/avatar/1/avatar")).andReturn();
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/avatar/1/avatar").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void downloadAvatar_shouldReturnPartialContentForRange() throws Exception {
+        mockMvc.perform(get("/avatar/1/avatar").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(content().string("2345"));
+    }
+
+    @Test
+    void downloadAvatarContent_shouldBeImmutablyCacheable() throws Exception {
+        String hash = "ab".repeat(32);
+        Path file = tempDir.resolve(hash + ".png");
+        Files.writeString(file, "content", StandardCharsets.US_ASCII);
+        when(avatarService.findContent(hash, "png")).thenReturn(file);
+
+        mockMvc.perform(get("/avatar/content/" + hash + ".png"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + hash + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(content().string("content"));
+    }
+
+    @Test
+    void downloadPreview_shouldReportPendingState() throws Exception {
+        when(avatarService.findPreview(5L)).thenReturn(new AvatarPreviewData(null, null, PreviewStatus.PENDING));
+
+        mockMvc.perform(get("/avatar/5/avatar/preview"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("X-Preview-Status", "PENDING"))
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void downloadPreview_shouldReturnReadyPreview() throws Exception {
+        when(avatarService.findPreview(6L))
+                .thenReturn(new AvatarPreviewData("image/png", new byte[]{1, 2, 3}, PreviewStatus.READY));
+
+        mockMvc.perform(get("/avatar/6/avatar/preview"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Preview-Status", "READY"))
+                .andExpect(content().bytes(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void downloadPreview_shouldReportFailedState() throws Exception {
+        when(avatarService.findPreview(7L)).thenReturn(new AvatarPreviewData(null, null, PreviewStatus.FAILED));
+
+        mockMvc.perform(get("/avatar/7/avatar/preview"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(header().string("X-Preview-Status", "FAILED"));
+    }
+
+    @Test
+    void downloadPreview_shouldReturnNotFoundWithoutAvatar() throws Exception {
+        mockMvc.perform(get("/avatar/9/avatar/preview"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void downloadRendition_shouldServeWhitelistedWidth() throws Exception {
+        Path file = tempDir.resolve("source.png");
+        AvatarRenditionCache.Rendition rendition = new AvatarRenditionCache.Rendition(
+                "small".getBytes(StandardCharsets.US_ASCII), 1_700_000_000_000L);
+        AvatarFile avatar = new AvatarFile(file.toString(), "image/png", "cd".repeat(32));
+        Files.writeString(file, "original", StandardCharsets.US_ASCII);
+        when(avatarService.findAvatarFile(8L)).thenReturn(avatar);
+        when(avatarService.isSupportedPreviewWidth(200)).thenReturn(true);
+        when(avatarService.findRendition(avatar, 200)).thenReturn(rendition);
+
+        mockMvc.perform(get("/avatar/8/avatar/preview?w=200"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + "cd".repeat(32) + "-200\""))
+                .andExpect(content().string("small"));
+    }
+
+    @Test
+    void downloadRendition_shouldRejectUnsupportedWidth() throws Exception {
+        when(avatarService.isSupportedPreviewWidth(123)).thenReturn(false);
+
+        mockMvc.perform(get("/avatar/1/avatar/preview?w=123"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllAvatars_shouldReturnMetadataSliceWithCursor() throws Exception {
+        AvatarInfoSlice slice = new AvatarInfoSlice(
+                List.of(new AvatarInfo(11L, 3L, 2048, "image/png")), 11L, true);
+        when(avatarService.getAllAvatars(10L, 1)).thenReturn(slice);
+
+        mockMvc.perform(get("/avatar?after=10&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(11))
+                .andExpect(jsonPath("$.content[0].studentId").value(3))
+                .andExpect(jsonPath("$.content[0].fileSize").value(2048))
+                .andExpect(jsonPath("$.content[0].previewUrl").value("/avatar/3/avatar/preview"))
+                .andExpect(jsonPath("$.content[0].data").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value(11))
+                .andExpect(jsonPath("$.hasNext").value(true));
+    }
+
+    @Test
+    void downloadAvatar_shouldReturnNotFoundWithoutFile() throws Exception {
+        when(avatarService.findAvatarFile(2L)).thenReturn(new AvatarFile(null, null, null));
+
+        mockMvc.perform(get("/avatar/2/avatar"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void importAvatars_shouldReturnReport() throws Exception {
+        AvatarImportReport report = new AvatarImportReport(2, 1, 1, 5, List.of(
+                new AvatarImportResult("1.png", 1L, AvatarImportResult.Status.IMPORTED, null),
+                new AvatarImportResult("Unknown.png", null, AvatarImportResult.Status.STUDENT_NOT_FOUND, "No student")));
+        when(avatarImportService.importArchive(any())).thenReturn(report);
+
+        mockMvc.perform(multipart("/avatar/import")
+                        .file(new MockMultipartFile("archive", "avatars.zip", "application/zip", new byte[]{1, 2})))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.entries[1].status").value("STUDENT_NOT_FOUND"));
+    }
+
+    @Test
+    void importAvatars_shouldRejectTooManyEntries() throws Exception {
+        when(avatarImportService.importArchive(any())).thenThrow(new IllegalArgumentException("too many entries"));
+
+        mockMvc.perform(multipart("/avatar/import")
+                        .file(new MockMultipartFile("archive", "avatars.zip", "application/zip", new byte[]{1, 2})))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,108 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.dto.AvatarPreviewData;
+import ru.hogwarts.school.dto.CacheStats;
+import ru.hogwarts.school.entities.PreviewStatus;
+import ru.hogwarts.school.service.AvatarPreviewCache;
+import ru.hogwarts.school.service.StudentChangedEvent;
+import ru.hogwarts.school.service.StudentChangedEvent.StudentState;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarPreviewCacheTest {
+
+    @Test
+    void get_shouldLoadOnceAndCountHitsAndMisses() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofMegabytes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            cache.get(1L, id -> {
+                loads.incrementAndGet();
+                return ready(100);
+            });
+        }
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, loads.get());
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+    }
+
+    @Test
+    void get_shouldNotCachePendingPreview() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofMegabytes(1));
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            cache.get(1L, id -> {
+                loads.incrementAndGet();
+                return new AvatarPreviewData(null, null, PreviewStatus.PENDING);
+            });
+        }
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidate_shouldForceReload() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofMegabytes(1));
+        cache.get(1L, id -> ready(10));
+
+        cache.invalidate(1L);
+        AvatarPreviewData reloaded = cache.get(1L, id -> ready(20));
+
+        assertEquals(20, reloaded.data().length);
+    }
+
+    @Test
+    void invalidate_shouldNotWaitForLoadAndDropItsResult() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofMegabytes(1));
+
+        // Загрузка ждет инвалидацию из другого потока: под блокировкой Caffeine это была бы взаимоблокировка
+        AvatarPreviewData loaded = cache.get(1L, id -> {
+            CompletableFuture.runAsync(() -> cache.invalidate(id)).orTimeout(5, TimeUnit.SECONDS).join();
+            return ready(10);
+        });
+        AvatarPreviewData reloaded = cache.get(1L, id -> ready(20));
+
+        assertEquals(10, loaded.data().length);
+        assertEquals(20, reloaded.data().length);
+    }
+
+    @Test
+    void onStudentChanged_shouldDropPreviewOfDeletedStudent() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofMegabytes(1));
+        cache.get(1L, id -> ready(10));
+        cache.get(2L, id -> ready(10));
+
+        cache.onStudentChanged(new StudentChangedEvent(1L, new StudentState("Student", 20, null), null, 0));
+        cache.onStudentChanged(new StudentChangedEvent(2L, null, new StudentState("Student", 21, null), 1));
+
+        assertNull(cache.get(1L, id -> null));
+        assertEquals(10, cache.get(2L, id -> null).data().length);
+    }
+
+    @Test
+    void get_shouldStayWithinByteBudget() {
+        AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofKilobytes(100));
+
+        for (long id = 0; id < 50; id++) {
+            cache.get(id, studentId -> ready(10_000));
+        }
+
+        CacheStats stats = cache.stats();
+        assertTrue(stats.weightedSize() <= DataSize.ofKilobytes(100).toBytes());
+        assertTrue(stats.evictionCount() > 0);
+    }
+
+    private static AvatarPreviewData ready(int size) {
+        return new AvatarPreviewData("image/png", new byte[size], PreviewStatus.READY);
+    }
+}
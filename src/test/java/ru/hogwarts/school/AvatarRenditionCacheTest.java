@@ -0,0 +1,81 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.service.AvatarRenditionCache;
+import ru.hogwarts.school.service.ThumbnailEngine;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarRenditionCacheTest {
+
+    private static final String HASH_A = "a".repeat(64);
+    private static final String HASH_B = "b".repeat(64);
+
+    @TempDir
+    Path root;
+
+    @Test
+    void getRendition_shouldGenerateOnceAndServeFromDisk() throws Exception {
+        AvatarRenditionCache cache = newCache(DataSize.ofMegabytes(1));
+        Path source = writeImage("a.png");
+
+        Path first = cache.getRendition(HASH_A, source, 48);
+        long modified = Files.getLastModifiedTime(first).toMillis();
+        Path second = cache.getRendition(HASH_A, source, 48);
+
+        assertEquals(first, second);
+        assertEquals(modified, Files.getLastModifiedTime(second).toMillis());
+        assertEquals(48, ImageIO.read(first.toFile()).getWidth());
+    }
+
+    @Test
+    void getRendition_shouldRejectWidthOutsideWhitelist() throws Exception {
+        AvatarRenditionCache cache = newCache(DataSize.ofMegabytes(1));
+
+        assertFalse(cache.supportsWidth(77));
+        assertThrows(IllegalArgumentException.class, () -> cache.getRendition(HASH_A, writeImage("a.png"), 77));
+    }
+
+    @Test
+    void getRendition_shouldEvictLeastRecentlyUsedWhenOverBudget() throws Exception {
+        AvatarRenditionCache cache = newCache(DataSize.ofBytes(1));
+
+        Path first = cache.getRendition(HASH_A, writeImage("a.png"), 48);
+        Path second = cache.getRendition(HASH_B, writeImage("b.png"), 48);
+
+        assertFalse(Files.exists(first));
+        assertTrue(Files.exists(second));
+    }
+
+    @Test
+    void readRendition_shouldRegenerateFileRemovedBehindCache() throws Exception {
+        AvatarRenditionCache cache = newCache(DataSize.ofMegabytes(1));
+        Path source = writeImage("a.png");
+        Path path = cache.getRendition(HASH_A, source, 100);
+        Files.delete(path);
+
+        AvatarRenditionCache.Rendition rendition = cache.readRendition(HASH_A, source, 100);
+
+        assertEquals(100, ImageIO.read(new ByteArrayInputStream(rendition.data())).getWidth());
+        assertTrue(Files.exists(path));
+    }
+
+    private AvatarRenditionCache newCache(DataSize maxSize) throws Exception {
+        return new AvatarRenditionCache(new ThumbnailEngine(), root.toString(), List.of(48, 100), maxSize);
+    }
+
+    private Path writeImage(String name) throws Exception {
+        Path file = root.resolve(name);
+        ImageIO.write(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        return file;
+    }
+}
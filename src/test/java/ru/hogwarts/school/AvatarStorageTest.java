@@ -0,0 +1,135 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hogwarts.school.service.AvatarStorage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarStorageTest {
+
+    private static final long MAX_BYTES = 1024 * 1024;
+    private static final long MAX_PIXELS = 1_000_000;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void store_shouldShardFilesBySha256AndCaptureHeader() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString());
+        byte[] png = image(30, 20, "png");
+
+        AvatarStorage.StoredContent content = storage.store(new ByteArrayInputStream(png), MAX_BYTES, MAX_PIXELS);
+
+        String expectedHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(png));
+        assertEquals(expectedHash, content.hash());
+        assertEquals(png.length, content.size());
+        assertEquals(root.resolve(expectedHash.substring(0, 2) + "/" + expectedHash.substring(2, 4)
+                + "/" + expectedHash + ".png"), content.path());
+        assertArrayEquals(png, Files.readAllBytes(content.path()));
+        assertEquals("image/png", content.image().mediaType());
+        assertEquals(30, content.image().width());
+        assertEquals(20, content.image().height());
+    }
+
+    @Test
+    void store_shouldSniffFormatRegardlessOfClaimedType() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString());
+
+        AvatarStorage.StoredContent content = storage.store(
+                new ByteArrayInputStream(image(10, 10, "jpg")), MAX_BYTES, MAX_PIXELS);
+
+        assertEquals("image/jpeg", content.image().mediaType());
+        assertTrue(content.path().toString().endsWith(".jpg"));
+    }
+
+    @Test
+    void store_shouldSkipApplicationSegmentsLargerThanAnyFixedHeader() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString());
+        byte[] plain = image(64, 48, "jpg");
+        // Как у камер: EXIF с миниатюрой (APP1) и профиль ICC (APP2), вместе ~192 КБ до SOF
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        jpeg.write(plain, 0, 2);
+        writeSegment(jpeg, 0xE1, 65_533);
+        writeSegment(jpeg, 0xE2, 65_533);
+        writeSegment(jpeg, 0xE2, 65_533);
+        jpeg.write(plain, 2, plain.length - 2);
+        byte[] content = jpeg.toByteArray();
+
+        AvatarStorage.StoredContent stored = storage.store(new ByteArrayInputStream(content), MAX_BYTES, MAX_PIXELS);
+
+        assertEquals("image/jpeg", stored.image().mediaType());
+        assertEquals(64, stored.image().width());
+        assertEquals(48, stored.image().height());
+        assertEquals(content.length, stored.size());
+        assertArrayEquals(content, Files.readAllBytes(stored.path()));
+    }
+
+    @Test
+    void store_shouldDeduplicateIdenticalContent() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString());
+        byte[] png = image(10, 10, "png");
+
+        AvatarStorage.StoredContent first = storage.store(new ByteArrayInputStream(png), MAX_BYTES, MAX_PIXELS);
+        AvatarStorage.StoredContent second = storage.store(new ByteArrayInputStream(png), MAX_BYTES, MAX_PIXELS);
+
+        assertEquals(first.path(), second.path());
+        try (var files = Files.walk(root)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void store_shouldRejectNonImageBeforeWriting() {
+        AvatarStorage storage = new AvatarStorage(root.toString());
+        byte[] text = "definitely not an image".getBytes(StandardCharsets.US_ASCII);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.store(new ByteArrayInputStream(text), MAX_BYTES, MAX_PIXELS));
+        assertFalse(Files.exists(root.resolve(".tmp")));
+    }
+
+    @Test
+    void store_shouldRejectOversizedImages() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString());
+        byte[] png = image(100, 100, "png");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.store(new ByteArrayInputStream(png), MAX_BYTES, 100 * 99));
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.store(new ByteArrayInputStream(png), png.length - 1, MAX_PIXELS));
+    }
+
+    @Test
+    void resolve_shouldRejectTraversalAttempts() {
+        AvatarStorage storage = new AvatarStorage(root.toString());
+
+        assertThrows(IllegalArgumentException.class, () -> storage.resolve("../../etc/passwd", "png"));
+    }
+
+    private static void writeSegment(ByteArrayOutputStream out, int marker, int payloadLength) {
+        int length = payloadLength + 2;
+        out.write(0xFF);
+        out.write(marker);
+        out.write(length >> 8);
+        out.write(length & 0xFF);
+        out.writeBytes(new byte[payloadLength]);
+    }
+
+    private static byte[] image(int width, int height, String format) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, baos);
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import ru.hogwarts.school.dto.CacheStats;
+import ru.hogwarts.school.service.EntityCaches;
+import ru.hogwarts.school.service.StudentChangedEvent;
+import ru.hogwarts.school.service.StudentChangedEvent.StudentState;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityCachesTest {
+
+    @Test
+    void student_shouldNotKeepValueLoadedBeforeConcurrentEviction() {
+        EntityCaches caches = new EntityCaches(cacheManager());
+        AtomicInteger loads = new AtomicInteger();
+
+        // Изменение коммитится и сбрасывает кеш, пока загрузка уже прочитала старую строку
+        String stale = caches.student(1L, id -> {
+            loads.incrementAndGet();
+            caches.onStudentChanged(new StudentChangedEvent(id, state("Old"), state("New"), 2));
+            return "Old";
+        });
+        String reloaded = caches.student(1L, id -> {
+            loads.incrementAndGet();
+            return "New";
+        });
+
+        assertEquals("Old", stale);
+        assertEquals("New", reloaded);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void student_shouldServeRepeatsFromCache() {
+        EntityCaches caches = new EntityCaches(cacheManager());
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            caches.student(1L, id -> "Student " + loads.incrementAndGet());
+        }
+
+        CacheStats stats = caches.stats().get(EntityCaches.STUDENTS);
+        assertEquals(1, loads.get());
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(1, stats.estimatedSize());
+        assertEquals(0, stats.weightedSize());
+        assertEquals(100, stats.maximumWeight());
+    }
+
+    private static CaffeineCacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(EntityCaches.STUDENTS);
+        cacheManager.setCacheSpecification("maximumSize=100,recordStats");
+        return cacheManager;
+    }
+
+    private static StudentState state(String name) {
+        return new StudentState(name, 20, null);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.entities.Faculty;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.service.FacultyCatalog;
+import ru.hogwarts.school.service.FacultyChangedEvent;
+import ru.hogwarts.school.service.FacultyChangedEvent.FacultyState;
+import ru.hogwarts.school.service.FacultySnapshot;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FacultyCatalogTest {
+
+    private final FacultyRepository facultyRepository = mock(FacultyRepository.class);
+    private final FacultyCatalog catalog = new FacultyCatalog(facultyRepository);
+
+    private static Faculty faculty(long id, String name, String color) {
+        Faculty faculty = new Faculty();
+        faculty.setId(id);
+        faculty.setName(name);
+        faculty.setColor(color);
+        return faculty;
+    }
+
+    @Test
+    void reload_shouldIndexByIdNameAndColor() {
+        when(facultyRepository.findAll()).thenReturn(List.of(
+                faculty(2L, "Slytherin", "Green"),
+                faculty(1L, "Gryffindor", "Red"),
+                faculty(3L, "Green", "Yellow")));
+        catalog.reload();
+
+        FacultySnapshot snapshot = catalog.get();
+        assertEquals("Gryffindor", snapshot.byId(1L).orElseThrow().name());
+        assertTrue(snapshot.byId(42L).isEmpty());
+        // Цвет сравнивается точно, как в запросе color = ?
+        assertEquals(List.of(2L), snapshot.byColor("Green").stream().map(FacultyDto::id).toList());
+        assertTrue(snapshot.byColor("green").isEmpty());
+        // Поиск по названию или цвету без учета регистра, по возрастанию ID
+        assertEquals(List.of(2L, 3L), snapshot.search("GREEN").stream().map(FacultyDto::id).toList());
+        assertEquals("Gryffindor", snapshot.longestName().orElseThrow());
+    }
+
+    @Test
+    void facultyEvents_shouldPublishNewSnapshotAndKeepOldOneIntact() {
+        when(facultyRepository.findAll()).thenReturn(List.of(faculty(1L, "Gryffindor", "Red")));
+        catalog.reload();
+        FacultySnapshot before = catalog.get();
+
+        catalog.onFacultyChanged(new FacultyChangedEvent(2L, null, new FacultyState("Hufflepuff", "Yellow"), 1));
+        catalog.onFacultyChanged(new FacultyChangedEvent(1L, new FacultyState("Gryffindor", "Red"),
+                new FacultyState("Gryffindor", "Scarlet"), 2));
+        catalog.onFacultyChanged(new FacultyChangedEvent(2L, new FacultyState("Hufflepuff", "Yellow"), null, 0));
+
+        FacultySnapshot after = catalog.get();
+        assertEquals(1, after.size());
+        assertTrue(after.byColor("Red").isEmpty());
+        assertEquals("Scarlet", after.byId(1L).orElseThrow().color());
+        assertEquals("Red", before.byId(1L).orElseThrow().color());
+        assertTrue(after.search("hufflepuff").isEmpty());
+    }
+
+    @Test
+    void longestName_shouldBeEmptyWithoutFaculties() {
+        when(facultyRepository.findAll()).thenReturn(List.of());
+        catalog.reload();
+
+        assertTrue(catalog.get().longestName().isEmpty());
+        assertTrue(catalog.get().search("red").isEmpty());
+    }
+}
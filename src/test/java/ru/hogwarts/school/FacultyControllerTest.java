@@ -6,7 +6,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.http.*;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentDto;
 import ru.hogwarts.school.entities.Faculty;
+import ru.hogwarts.school.entities.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
@@ -15,7 +18,8 @@ import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "sql.profiler.fail-on-budget-exceeded=true")
 class FacultyControllerTest {
 
     @Autowired
@@ -183,4 +187,28 @@ class FacultyControllerTest {
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getFacultyAndStudents_shouldNotSerializeStudentGraph() {
+        Faculty faculty = new Faculty();
+        faculty.setName("Hufflepuff");
+        faculty.setColor("Yellow");
+        Faculty savedFaculty = facultyRepository.save(faculty);
+        Student student = new Student();
+        student.setName("Cedric Diggory");
+        student.setAge(17);
+        student.setFaculty(savedFaculty);
+        studentRepository.save(student);
+
+        String facultyJson = restTemplate.getForObject("/faculty/" + savedFaculty.getId(), String.class);
+        assertFalse(facultyJson.contains("students"));
+
+        ResponseEntity<StudentDto[]> response = restTemplate.getForEntity(
+                "/faculty/" + savedFaculty.getId() + "/students", StudentDto[].class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        StudentDto[] students = Objects.requireNonNull(response.getBody());
+        assertEquals(1, students.length);
+        assertEquals("Cedric Diggory", students[0].name());
+        assertEquals(new FacultyDto(savedFaculty.getId(), "Hufflepuff", "Yellow"), students[0].faculty());
+    }
+}
@@ -8,8 +8,9 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.hogwarts.school.controller.FacultyController;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentDto;
 import ru.hogwarts.school.entities.Faculty;
-import ru.hogwarts.school.entities.Student;
 import ru.hogwarts.school.service.FacultyService;
 
 import java.util.Arrays;
@@ -35,10 +36,7 @@ class FacultyControllerWebMvcTest {
 
     @Test
     void getFacultyById_shouldReturnFacultyWhenExists() throws Exception {
-        Faculty faculty = new Faculty();
-        faculty.setId(1L);
-        faculty.setName("Gryffindor");
-        faculty.setColor("Red");
+        FacultyDto faculty = new FacultyDto(1L, "Gryffindor", "Red");
 
         when(facultyService.getFaculty(1L)).thenReturn(faculty);
 
@@ -55,10 +53,7 @@ class FacultyControllerWebMvcTest {
         newFaculty.setName("Ravenclaw");
         newFaculty.setColor("Blue");
 
-        Faculty createdFaculty = new Faculty();
-        createdFaculty.setId(2L);
-        createdFaculty.setName("Ravenclaw");
-        createdFaculty.setColor("Blue");
+        FacultyDto createdFaculty = new FacultyDto(2L, "Ravenclaw", "Blue");
 
         when(facultyService.addFaculty(any(Faculty.class))).thenReturn(createdFaculty);
 
@@ -78,7 +73,7 @@ class FacultyControllerWebMvcTest {
         updatedFaculty.setName("Slytherin Updated");
         updatedFaculty.setColor("Green");
 
-        when(facultyService.updateFaculty(eq(1L), any(Faculty.class))).thenReturn(updatedFaculty);
+        when(facultyService.updateFaculty(eq(1L), any(Faculty.class))).thenReturn(FacultyDto.from(updatedFaculty));
 
         mockMvc.perform(put("/faculty/1")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -91,10 +86,7 @@ class FacultyControllerWebMvcTest {
 
     @Test
     void findAllFacultiesByColor_shouldReturnFaculties() throws Exception {
-        Faculty faculty = new Faculty();
-        faculty.setId(3L);
-        faculty.setName("Hufflepuff");
-        faculty.setColor("Yellow");
+        FacultyDto faculty = new FacultyDto(3L, "Hufflepuff", "Yellow");
 
         when(facultyService.findAllFacultiesByColor("Yellow")).thenReturn(Collections.singletonList(faculty));
 
@@ -107,10 +99,7 @@ class FacultyControllerWebMvcTest {
 
     @Test
     void searchFaculties_shouldReturnMatchingFaculties() throws Exception {
-        Faculty faculty = new Faculty();
-        faculty.setId(4L);
-        faculty.setName("Ravenclaw");
-        faculty.setColor("Blue");
+        FacultyDto faculty = new FacultyDto(4L, "Ravenclaw", "Blue");
 
         when(facultyService.searchFaculties("claw")).thenReturn(Collections.singletonList(faculty));
 
@@ -123,15 +112,8 @@ class FacultyControllerWebMvcTest {
 
     @Test
     void getFacultyStudents_shouldReturnStudentsForFaculty() throws Exception {
-        Student student1 = new Student();
-        student1.setId(1L);
-        student1.setName("Harry Potter");
-        student1.setAge(17);
-
-        Student student2 = new Student();
-        student2.setId(2L);
-        student2.setName("Hermione Granger");
-        student2.setAge(17);
+        StudentDto student1 = new StudentDto(1L, "Harry Potter", 17, null);
+        StudentDto student2 = new StudentDto(2L, "Hermione Granger", 17, null);
 
         when(facultyService.getFacultyStudents(1L)).thenReturn(Arrays.asList(student1, student2));
 
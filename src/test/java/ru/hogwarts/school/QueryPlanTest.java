@@ -0,0 +1,319 @@
+package ru.hogwarts.school;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.AfterAll;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.entities.PreviewStatus;
+import ru.hogwarts.school.repository.AvatarPreviewRepository;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Регрессии планов запросов на большом наборе данных.
+ * <p>
+ * Набор (1 000 000 студентов, 10 факультетов, 100 000 аватаров) засевается в отдельную базу
+ * {@code hogwarts_plan} один раз и переиспользуется следующими запусками. Для каждого метода
+ * репозиториев SQL перехватывается у Hibernate, а затем выполняется
+ * {@code EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON)} с теми же параметрами в откатываемой транзакции.
+ * Тест падает, если в плане появился Seq Scan по таблице от {@value #SMALL_TABLE_ROWS} строк
+ * или стоимость выросла больше допуска относительно {@value #BASELINE}.
+ * <p>
+ * Запуск: {@code mvn -Pquery-plan test}; база создается заранее:
+ * {@code CREATE DATABASE hogwarts_plan OWNER student}. Базовые стоимости перезаписываются
+ * с {@code -Dquery-plan.update-baseline=true}.
+ */
+@Tag("query-plan")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest(properties = {
+        "spring.datasource.url=${query-plan.datasource.url:jdbc:postgresql://localhost:5432/hogwarts_plan}",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=ru.hogwarts.school.QueryPlanTest$SqlCapture",
+        "spring.jpa.show-sql=false",
+        "student.column-store.enabled=false",
+        "logging.level.ru.hogwarts.school.service=INFO"
+})
+class QueryPlanTest {
+    private static final Logger logger = LoggerFactory.getLogger(QueryPlanTest.class);
+
+    static final String BASELINE = "src/test/resources/query-plans/baseline.properties";
+    private static final int STUDENTS = 1_000_000;
+    private static final int FACULTIES = 10;
+    private static final int AVATARS = 100_000;
+    // Полный проход по таблице меньше этого размера дешевле любого индекса
+    private static final int SMALL_TABLE_ROWS = 1_000;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @Autowired
+    private AvatarPreviewRepository avatarPreviewRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Properties baseline = new Properties();
+    private final Properties measured = new Properties();
+    private final Set<String> smallTables = new HashSet<>();
+    private final boolean updateBaseline = Boolean.getBoolean("query-plan.update-baseline");
+    private final double costTolerance = Double.parseDouble(System.getProperty("query-plan.cost-tolerance", "0.25"));
+    // Оценки маленьких планов колеблются на несколько единиц между выборками ANALYZE
+    private final double costSlack = Double.parseDouble(System.getProperty("query-plan.cost-slack", "10"));
+
+    @BeforeAll
+    void seed() throws IOException {
+        Path baselineFile = Path.of(BASELINE);
+        if (Files.exists(baselineFile)) {
+            try (Reader reader = Files.newBufferedReader(baselineFile)) {
+                baseline.load(reader);
+            }
+        }
+        Integer students = jdbcTemplate.queryForObject("SELECT count(*) FROM student", Integer.class);
+        Integer avatars = jdbcTemplate.queryForObject("SELECT count(*) FROM avatar", Integer.class);
+        if (students != null && students == STUDENTS && avatars != null && avatars == AVATARS) {
+            logger.info("Набор данных уже засеян, пропускаем");
+        } else {
+            long start = System.nanoTime();
+            transactionTemplate.executeWithoutResult(status -> seedDataset());
+            logger.info("Набор данных засеян за {} мс", (System.nanoTime() - start) / 1_000_000);
+        }
+        // Статистика и карта видимости для index-only scan; VACUUM выполняется вне транзакции
+        jdbcTemplate.execute("VACUUM ANALYZE faculty, student, avatar, avatar_preview");
+        smallTables.addAll(jdbcTemplate.queryForList(
+                "SELECT relname FROM pg_class WHERE relkind = 'r' AND reltuples < ?", String.class, SMALL_TABLE_ROWS));
+    }
+
+    private void seedDataset() {
+        jdbcTemplate.execute("TRUNCATE avatar_preview, avatar, student, faculty");
+        jdbcTemplate.execute("SELECT setseed(0.42)");
+        jdbcTemplate.update("""
+                INSERT INTO faculty (id, name, color)
+                SELECT g, 'Faculty ' || g, (ARRAY['Red', 'Green', 'Blue', 'Yellow', 'Black'])[1 + g % 5]
+                FROM generate_series(1, ?) g
+                """, FACULTIES);
+        // Возраст 16..25, у каждого двадцатого нет факультета; имена уникальны за счет номера
+        jdbcTemplate.update("""
+                INSERT INTO student (id, name, age, faculty_id)
+                SELECT g,
+                       (ARRAY['Harry', 'Hermione', 'Ron', 'Draco', 'Luna', 'Neville', 'Ginny', 'Cedric',
+                              'Cho', 'Fred', 'George', 'Percy', 'Arthur', 'Albus', 'Seamus', 'Dean',
+                              'Padma', 'Parvati', 'Oliver', 'Katie'])[1 + floor(random() * 20)::int]
+                           || ' ' || (ARRAY['Potter', 'Granger', 'Weasley', 'Malfoy', 'Lovegood',
+                                            'Longbottom', 'Diggory', 'Chang', 'Finnigan', 'Thomas',
+                                            'Patil', 'Wood', 'Bell', 'Dumbledore'])[1 + floor(random() * 14)::int]
+                           || ' ' || g,
+                       16 + floor(random() * 10)::int,
+                       CASE WHEN g % 20 = 0 THEN NULL ELSE 1 + floor(random() * ?)::int END
+                FROM generate_series(1, ?) g
+                """, FACULTIES, STUDENTS);
+        // Аватар у каждого десятого студента; одно содержимое бывает у нескольких аватаров
+        jdbcTemplate.update("""
+                INSERT INTO avatar (id, file_path, file_size, media_type, student_id, content_hash,
+                                    preview_status, width, height)
+                SELECT g, '/avatars/' || md5((g % 80000)::text) || '.png', 20000 + g % 5000, 'image/png',
+                       g * ?, md5((g % 80000)::text) || md5((g % 80000)::text),
+                       CASE WHEN g % 100 = 0 THEN 'FAILED' ELSE 'READY' END, 400, 400
+                FROM generate_series(1, ?) g
+                """, STUDENTS / AVATARS, AVATARS);
+        jdbcTemplate.update("""
+                INSERT INTO avatar_preview (avatar_id, data)
+                SELECT id, decode(md5(id::text), 'hex') FROM avatar WHERE preview_status = 'READY'
+                """);
+        jdbcTemplate.execute("SELECT setval('faculty_seq', " + (FACULTIES + 1) + ", false)");
+        jdbcTemplate.execute("SELECT setval('student_seq', " + (STUDENTS + 1) + ", false)");
+        jdbcTemplate.execute("SELECT setval('avatar_id_seq', " + (AVATARS + 1) + ", false)");
+    }
+
+    /**
+     * Все методы репозиториев с запросами. Параметры EXPLAIN перечислены в порядке
+     * плейсхолдеров SQL, который генерирует Hibernate.
+     */
+    private List<PlanCase> cases() {
+        String hash = jdbcTemplate.queryForObject("SELECT content_hash FROM avatar WHERE id = 4242", String.class);
+        return List.of(
+                new PlanCase("student.findDtoById", () -> studentRepository.findDtoById(424_242L), 424_242L),
+                new PlanCase("student.findDtosByAge", () -> studentRepository.findDtosByAge(17), 17),
+                new PlanCase("student.findDtosByAgeBetween", () -> studentRepository.findDtosByAgeBetween(17, 18), 17, 18),
+                new PlanCase("student.findDtosByFacultyId", () -> studentRepository.findDtosByFacultyId(3L), 3L),
+                // Пересчет статистики по всем студентам: полный проход ожидаем
+                new PlanCase("student.countByAge", studentRepository::countByAge).allowSeqScan("student"),
+                new PlanCase("student.findNamesByLowerCasePrefix",
+                        () -> studentRepository.findNamesByLowerCasePrefix("lu", "lv"), "lu", "lv"),
+                new PlanCase("student.findDtosAfter",
+                        () -> studentRepository.findDtosAfter(500_000L, Limit.of(21)), 500_000L, 21),
+                new PlanCase("student.findDtosBefore",
+                        () -> studentRepository.findDtosBefore(500_000L, Limit.of(21)), 500_000L, 21),
+                new PlanCase("avatar.findByStudentId", () -> avatarRepository.findByStudentId(42_420L), 42_420L),
+                new PlanCase("avatar.findFileByStudentId", () -> avatarRepository.findFileByStudentId(42_420L), 42_420L),
+                new PlanCase("avatar.countByContentHash", () -> avatarRepository.countByContentHash(hash), hash),
+                new PlanCase("avatar.findFirstByContentHashAndPreviewStatus",
+                        () -> avatarRepository.findFirstByContentHashAndPreviewStatus(hash, PreviewStatus.READY),
+                        hash, PreviewStatus.READY.name(), 1),
+                new PlanCase("avatar.findAllByPreviewStatus",
+                        () -> avatarRepository.findAllByPreviewStatus(PreviewStatus.PENDING), PreviewStatus.PENDING.name()),
+                new PlanCase("avatar.findInfosAfter",
+                        () -> avatarRepository.findInfosAfter(50_000L, PageRequest.of(0, 10)), 50_000L, 11),
+                new PlanCase("avatar.findPreviewByStudentId",
+                        () -> avatarRepository.findPreviewByStudentId(42_420L), 42_420L),
+                new PlanCase("avatar.updatePreviewStatus",
+                        () -> avatarRepository.updatePreviewStatus(4242L, hash, PreviewStatus.READY),
+                        PreviewStatus.READY.name(), 4242L, hash),
+                new PlanCase("avatarPreview.upsert",
+                        () -> avatarPreviewRepository.upsert(4242L, new byte[]{1}), 4242L, new byte[]{1}),
+                new PlanCase("avatarPreview.copy",
+                        () -> avatarPreviewRepository.copy(4241L, 4242L), 4242L, 4241L),
+                new PlanCase("avatarPreview.deleteByAvatarId",
+                        () -> avatarPreviewRepository.deleteByAvatarId(4242L), 4242L));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> repositoryQueries_shouldUseIndexesWithinBaselineCost() {
+        return cases().stream().map(planCase -> DynamicTest.dynamicTest(planCase.name(), () -> check(planCase)));
+    }
+
+    private void check(PlanCase planCase) throws IOException {
+        String sql = capture(planCase);
+        long placeholders = sql.chars().filter(c -> c == '?').count();
+        assertEquals(placeholders, planCase.args().length, () -> "Число параметров не совпадает с SQL: " + sql);
+
+        JsonNode explain = explain(sql, planCase.args());
+        JsonNode plan = explain.get("Plan");
+        double cost = plan.get("Total Cost").asDouble();
+        List<String> seqScans = new ArrayList<>();
+        collectSeqScans(plan, seqScans);
+        logger.info("{}: cost={}, buffers={}, time={} мс, seq scans={}\n{}", planCase.name(), cost,
+                plan.path("Shared Hit Blocks").asLong() + plan.path("Shared Read Blocks").asLong(),
+                explain.get("Execution Time").asDouble(), seqScans, sql);
+        measured.setProperty(planCase.name(), String.format(Locale.ROOT, "%.2f", cost));
+
+        seqScans.removeAll(smallTables);
+        seqScans.removeAll(planCase.allowedSeqScans());
+        assertTrue(seqScans.isEmpty(), () -> planCase.name() + ": Seq Scan по " + seqScans + "\n" + explain.toPrettyString());
+        if (updateBaseline) {
+            return;
+        }
+        String expected = baseline.getProperty(planCase.name());
+        assertNotNull(expected, () -> planCase.name() + ": нет базовой стоимости в " + BASELINE
+                + ", запустите с -Dquery-plan.update-baseline=true");
+        double limit = Double.parseDouble(expected) * (1 + costTolerance) + costSlack;
+        assertTrue(cost <= limit, () -> String.format(Locale.ROOT, "%s: стоимость %.2f больше допустимой %.2f (базовая %s)%n%s",
+                planCase.name(), cost, limit, expected, explain.toPrettyString()));
+    }
+
+    @AfterAll
+    void writeBaseline() throws IOException {
+        if (!updateBaseline) {
+            return;
+        }
+        Path baselineFile = Path.of(BASELINE);
+        Files.createDirectories(baselineFile.getParent());
+        // Ключи по алфавиту, чтобы изменения базовой линии читались в диффе
+        try (Writer writer = Files.newBufferedWriter(baselineFile)) {
+            writer.write("# Стоимость плана (Total Cost) запросов репозиториев на наборе QueryPlanTest\n");
+            for (String name : new TreeSet<>(measured.stringPropertyNames())) {
+                writer.write(name + "=" + measured.getProperty(name) + "\n");
+            }
+        }
+        logger.info("Базовые стоимости записаны в {}", baselineFile.toAbsolutePath());
+    }
+
+    /**
+     * Первый SQL, который Hibernate отправил при вызове метода репозитория.
+     */
+    private String capture(PlanCase planCase) {
+        SqlCapture.statements.clear();
+        SqlCapture.enabled = true;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                planCase.invocation().run();
+                status.setRollbackOnly();
+            });
+        } finally {
+            SqlCapture.enabled = false;
+        }
+        assertFalse(SqlCapture.statements.isEmpty(), () -> planCase.name() + ": SQL не перехвачен");
+        return SqlCapture.statements.get(0);
+    }
+
+    private JsonNode explain(String sql, Object[] args) {
+        // EXPLAIN ANALYZE выполняет запрос, поэтому изменения откатываются
+        String json = transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            return jdbcTemplate.queryForObject("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + sql, String.class, args);
+        });
+        try {
+            return objectMapper.readTree(json).get(0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось разобрать план: " + json, e);
+        }
+    }
+
+    private static void collectSeqScans(JsonNode node, List<String> seqScans) {
+        String nodeType = node.path("Node Type").asText();
+        if ("Seq Scan".equals(nodeType) || "Parallel Seq Scan".equals(nodeType)) {
+            seqScans.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSeqScans(child, seqScans);
+        }
+    }
+
+    record PlanCase(String name, Runnable invocation, Object[] args, Set<String> allowedSeqScans) {
+
+        PlanCase(String name, Runnable invocation, Object... args) {
+            this(name, invocation, args, Set.of());
+        }
+
+        PlanCase allowSeqScan(String relation) {
+            Set<String> allowed = new HashSet<>(allowedSeqScans);
+            allowed.add(relation);
+            return new PlanCase(name, invocation, args, Set.copyOf(allowed));
+        }
+    }
+
+    /**
+     * Перехватывает SQL, подготовленный Hibernate; подключается через hibernate.session_factory.statement_inspector.
+     */
+    public static class SqlCapture implements StatementInspector {
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+        static volatile boolean enabled;
+
+        @Override
+        public String inspect(String sql) {
+            if (enabled) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.hogwarts.school;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.hogwarts.school.controller.QueryBudget;
+import ru.hogwarts.school.controller.SqlProfilingFilter;
+import ru.hogwarts.school.service.SqlProfile;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlProfilingFilterTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final SqlProfilingFilter filter = new SqlProfilingFilter(
+            new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class));
+
+    @Test
+    void doFilter_shouldExposeCountAndTimeAndRecordMetrics() throws Exception {
+        configure(false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("budgetOfTwo"), response, statements("select 1", "select 2"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("2", response.getHeader("X-SQL-Count"));
+        assertEquals("1.500", response.getHeader("X-SQL-Time-Ms"));
+        DistributionSummary summary = registry.get("sql.request.statements")
+                .tags("method", "GET", "uri", "/student/{id}").summary();
+        assertEquals(1, summary.count());
+        assertEquals(2, summary.totalAmount());
+        assertNull(SqlProfile.current());
+    }
+
+    @Test
+    void doFilter_shouldFailWhenBudgetExceededInTestMode() throws Exception {
+        configure(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("budgetOfTwo"), response, statements("select 1", "select 2", "select 3"));
+
+        assertEquals(500, response.getStatus());
+        assertEquals("3", response.getHeader("X-SQL-Count"));
+        assertEquals(1, registry.get("sql.request.budget.exceeded").counter().count());
+    }
+
+    @Test
+    void doFilter_shouldOnlyCountBudgetExceededOutsideTestMode() throws Exception {
+        configure(false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("budgetOfTwo"), response, statements("select 1", "select 2", "select 3"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(1, registry.get("sql.request.budget.exceeded").counter().count());
+    }
+
+    @Test
+    void doFilter_shouldDetectRepeatedStatement() throws Exception {
+        configure(false);
+        String[] sql = new String[12];
+        Arrays.fill(sql, "select * from student where faculty_id=?");
+
+        filter.doFilter(request("unlimited"), new MockHttpServletResponse(), statements(sql));
+
+        assertEquals(1, registry.get("sql.request.n-plus-one").counter().count());
+        assertTrue(registry.find("sql.request.budget.exceeded").counters().isEmpty());
+    }
+
+    @QueryBudget(2)
+    void budgetOfTwo() {
+    }
+
+    void unlimited() {
+    }
+
+    private void configure(boolean failOnBudgetExceeded) {
+        ReflectionTestUtils.setField(filter, "failOnBudgetExceeded", failOnBudgetExceeded);
+        ReflectionTestUtils.setField(filter, "defaultBudget", -1);
+        ReflectionTestUtils.setField(filter, "nPlusOneThreshold", 10);
+    }
+
+    private MockHttpServletRequest request(String handler) throws NoSuchMethodException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/student/1");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/student/{id}");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE,
+                new HandlerMethod(this, SqlProfilingFilterTest.class.getDeclaredMethod(handler)));
+        return request;
+    }
+
+    // Цепочка, которая вместо обработчика выполняет заданные команды по 0,75 мс
+    private static FilterChain statements(String... sql) {
+        return (request, response) -> {
+            for (String statement : sql) {
+                SqlProfile.current().record(statement, 750_000);
+            }
+        };
+    }
+}
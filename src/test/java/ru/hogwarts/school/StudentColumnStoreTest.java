@@ -0,0 +1,129 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.dto.StudentSearchHit;
+import ru.hogwarts.school.service.FacultyChangedEvent;
+import ru.hogwarts.school.service.FacultyChangedEvent.FacultyState;
+import ru.hogwarts.school.service.StudentChangedEvent;
+import ru.hogwarts.school.service.StudentChangedEvent.StudentState;
+import ru.hogwarts.school.service.StudentColumnStore;
+import ru.hogwarts.school.service.StudentFilter;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class StudentColumnStoreTest {
+
+    private final StudentColumnStore store =
+            new StudentColumnStore(mock(DataSource.class), mock(PlatformTransactionManager.class));
+
+    @Test
+    void find_shouldFollowInsertUpdateAndDeleteEvents() {
+        store.onFacultyChanged(new FacultyChangedEvent(1L, null, new FacultyState("Gryffindor", "Red"), 1));
+        store.onStudentChanged(new StudentChangedEvent(3L, null, new StudentState("Hermione", 17, 1L), 2));
+        store.onStudentChanged(new StudentChangedEvent(1L, null, new StudentState("Harry", 17, 1L), 3));
+        store.onStudentChanged(new StudentChangedEvent(2L, null, new StudentState("Draco", 18, null), 4));
+        store.onStudentChanged(new StudentChangedEvent(1L, new StudentState("Harry", 17, 1L),
+                new StudentState("Harry Potter", 18, 1L), 5));
+        store.onStudentChanged(new StudentChangedEvent(2L, new StudentState("Draco", 18, null), null, 0));
+
+        List<StudentDto> byAge = store.find(StudentFilter.age(18));
+        assertEquals(1, byAge.size());
+        assertEquals(1L, byAge.get(0).id());
+        assertEquals("Harry Potter", byAge.get(0).name());
+        assertEquals("Gryffindor", byAge.get(0).faculty().name());
+
+        List<StudentDto> roster = store.find(StudentFilter.faculty(1L));
+        assertEquals(List.of(1L, 3L), roster.stream().map(StudentDto::id).toList());
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void facultyDelete_shouldDetachItsStudents() {
+        store.onFacultyChanged(new FacultyChangedEvent(5L, null, new FacultyState("Slytherin", "Green"), 1));
+        store.onStudentChanged(new StudentChangedEvent(1L, null, new StudentState("Draco", 17, 5L), 2));
+
+        store.onFacultyChanged(new FacultyChangedEvent(5L, new FacultyState("Slytherin", "Green"), null, 0));
+
+        assertFalse(store.containsFaculty(5L));
+        assertTrue(store.find(StudentFilter.faculty(5L)).isEmpty());
+        assertNull(store.find(StudentFilter.all()).get(0).faculty());
+    }
+
+    @Test
+    void events_shouldSkipOlderVersionsAndStayDeleted() {
+        // Изменение доставлено раньше вставки, которую оно перекрывает
+        store.onStudentChanged(new StudentChangedEvent(1L, new StudentState("Luna", 17, null),
+                new StudentState("Luna Lovegood", 18, null), 5));
+        store.onStudentChanged(new StudentChangedEvent(1L, null, new StudentState("Luna", 17, null), 3));
+        assertEquals("Luna Lovegood", store.find(StudentFilter.all()).get(0).name());
+
+        store.onStudentChanged(new StudentChangedEvent(1L, new StudentState("Luna Lovegood", 18, null), null, 0));
+        store.onStudentChanged(new StudentChangedEvent(1L, new StudentState("Luna", 17, null),
+                new StudentState("Luna L.", 19, null), 7));
+        assertEquals(0, store.size());
+
+        store.onFacultyChanged(new FacultyChangedEvent(2L, new FacultyState("Ravenclaw", "Blue"),
+                new FacultyState("Ravenclaw", "Bronze"), 4));
+        store.onFacultyChanged(new FacultyChangedEvent(2L, null, new FacultyState("Ravenclaw", "Blue"), 2));
+        store.onStudentChanged(new StudentChangedEvent(3L, null, new StudentState("Cho", 18, 2L), 6));
+        assertEquals("Bronze", store.find(StudentFilter.all()).get(0).faculty().color());
+    }
+
+    @Test
+    void aggregates_shouldMatchAcrossParallelThreshold() {
+        int total = 100_000;
+        for (long id = 1; id <= total; id++) {
+            store.onStudentChanged(new StudentChangedEvent(id, null,
+                    new StudentState((id % 2 == 0 ? "Alpha" : "Beta") + id, (int) (16 + id % 10), 1 + id % 3), id));
+        }
+        // Удаление из середины переносит последнюю строку и не должно терять индекс
+        for (long id = 1; id <= total; id += 7) {
+            store.onStudentChanged(new StudentChangedEvent(id, null, null, 0));
+        }
+
+        long expected = LongStream.rangeClosed(1, total)
+                .filter(id -> (id - 1) % 7 != 0)
+                .filter(id -> 16 + id % 10 >= 20 && 16 + id % 10 <= 22)
+                .count();
+        List<StudentDto> found = store.find(StudentFilter.ageBetween(20, 22));
+        assertEquals(expected, found.size());
+        assertEquals(expected, store.count(StudentFilter.ageBetween(20, 22)));
+        for (int i = 1; i < found.size(); i++) {
+            assertTrue(found.get(i - 1).id() < found.get(i).id());
+        }
+
+        Map<Long, Long> byFaculty = store.countByFaculty(StudentFilter.all());
+        assertEquals(store.size(), byFaculty.values().stream().mapToLong(Long::longValue).sum());
+        assertEquals(store.count(StudentFilter.all().withNamePrefix("alpha")),
+                store.find(StudentFilter.all()).stream().filter(s -> s.name().startsWith("Alpha")).count());
+        assertEquals(21.0, store.averageAge(StudentFilter.ageBetween(20, 22)).orElseThrow(), 0.1);
+    }
+
+    @Test
+    void findSimilarNames_shouldRankTyposAndSkipRenamedAndExcluded() {
+        store.onStudentChanged(new StudentChangedEvent(1L, null, new StudentState("Hermione Granger", 17, null), 1));
+        store.onStudentChanged(new StudentChangedEvent(2L, null, new StudentState("Harry Potter", 17, null), 2));
+        store.onStudentChanged(new StudentChangedEvent(3L, null, new StudentState("Herbert Grange", 18, null), 3));
+        store.onStudentChanged(new StudentChangedEvent(4L, null, new StudentState("Ron Weasley", 17, null), 4));
+        store.onStudentChanged(new StudentChangedEvent(4L, new StudentState("Ron Weasley", 17, null),
+                new StudentState("Ronald Weasley", 17, null), 5));
+
+        List<StudentSearchHit> hits = store.findSimilarNames("hermoine granger", Set.of(), 5);
+        assertEquals(List.of(1L, 3L), hits.stream().map(StudentSearchHit::id).toList());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+
+        assertEquals(List.of("Ronald Weasley"), store.findSimilarNames("ron weasly", Set.of(), 5).stream()
+                .map(StudentSearchHit::name).toList());
+        assertEquals(List.of(3L), store.findSimilarNames("hermoine granger", Set.of(1L), 5).stream()
+                .map(StudentSearchHit::id).toList());
+    }
+}
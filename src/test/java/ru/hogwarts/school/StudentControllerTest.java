@@ -5,17 +5,52 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import ru.hogwarts.school.dto.CacheStats;
+import ru.hogwarts.school.dto.StudentAgeStatistics;
+import ru.hogwarts.school.dto.StudentBulkItem;
+import ru.hogwarts.school.dto.StudentBulkReport;
+import ru.hogwarts.school.dto.StudentBulkResult;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.dto.StudentImportError;
+import ru.hogwarts.school.dto.StudentImportReport;
+import ru.hogwarts.school.dto.StudentSearchHit;
+import ru.hogwarts.school.dto.StudentSlice;
+import ru.hogwarts.school.entities.Faculty;
 import ru.hogwarts.school.entities.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.EntityCaches;
+import ru.hogwarts.school.service.StudentChangedEvent;
+import ru.hogwarts.school.service.StudentColumnStore;
+import ru.hogwarts.school.service.StudentFilter;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "sql.profiler.fail-on-budget-exceeded=true")
 class StudentControllerTest {
 
     @Autowired
@@ -27,6 +62,15 @@ class StudentControllerTest {
     @Autowired
     private FacultyRepository facultyRepository;
 
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StudentColumnStore columnStore;
+
     @BeforeEach
     void cleanDatabase() {
         studentRepository.deleteAll();
@@ -52,6 +96,8 @@ class StudentControllerTest {
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals(created.getId(), response.getBody().getId());
+        assertNotNull(response.getHeaders().getFirst("X-SQL-Count"));
+        assertNotNull(response.getHeaders().getFirst("X-SQL-Time-Ms"));
     }
 
     @Test
@@ -95,6 +141,69 @@ class StudentControllerTest {
         assertEquals("Updated Name", response.getBody().getName());
     }
 
+    @Test
+    void getStudent_shouldServeRepeatsFromCacheAndEvictOnChange() {
+        Faculty faculty = new Faculty();
+        faculty.setName("Cached Faculty");
+        faculty.setColor("Blue");
+        faculty = facultyRepository.save(faculty);
+        Student student = new Student();
+        student.setName("Cached Student");
+        student.setAge(20);
+        student.setFaculty(faculty);
+        Student created = restTemplate.postForEntity("/student", student, Student.class).getBody();
+        String url = "/student/" + created.getId();
+
+        restTemplate.getForObject(url, Student.class);
+        long hits = cacheStats().get(EntityCaches.STUDENTS).hitCount();
+        Student cached = restTemplate.getForObject(url, Student.class);
+        assertEquals(hits + 1, cacheStats().get(EntityCaches.STUDENTS).hitCount());
+        assertEquals("Cached Faculty", cached.getFaculty().getName());
+        Faculty cachedFaculty = restTemplate.getForObject(url + "/faculty", Faculty.class);
+        assertEquals(hits + 2, cacheStats().get(EntityCaches.STUDENTS).hitCount());
+        assertEquals("Cached Faculty", cachedFaculty.getName());
+
+        created.setAge(21);
+        restTemplate.put(url, created);
+        assertEquals(21, restTemplate.getForObject(url, Student.class).getAge());
+
+        faculty.setName("Renamed Faculty");
+        facultyRepository.save(faculty);
+        assertEquals("Renamed Faculty", restTemplate.getForObject(url, Student.class).getFaculty().getName());
+
+        restTemplate.delete(url);
+        assertFalse(restTemplate.getForEntity(url, String.class).getStatusCode().is2xxSuccessful());
+    }
+
+    @Test
+    void columnStore_shouldKeepNewerRowWhenStaleEventArrivesAfterRebuild() {
+        Student student = new Student();
+        student.setName("Versioned Student");
+        student.setAge(17);
+        Student created = restTemplate.postForEntity("/student", student, Student.class).getBody();
+        long createdVersion = jdbcTemplate.queryForObject("SELECT version FROM student WHERE id = ?",
+                Long.class, created.getId());
+        created.setAge(19);
+        restTemplate.put("/student/" + created.getId(), created);
+        assertTrue(jdbcTemplate.queryForObject("SELECT version FROM student WHERE id = ?",
+                Long.class, created.getId()) > createdVersion);
+
+        columnStore.rebuild();
+        // Запоздавшее событие вставки старше строки из снимка
+        columnStore.onStudentChanged(new StudentChangedEvent(created.getId(), null,
+                new StudentChangedEvent.StudentState("Versioned Student", 17, null), createdVersion));
+
+        assertEquals(List.of(created.getId()), columnStore.find(StudentFilter.age(19)).stream()
+                .map(StudentDto::id).toList());
+        assertTrue(columnStore.find(StudentFilter.age(17)).isEmpty());
+    }
+
+    private Map<String, CacheStats> cacheStats() {
+        return restTemplate.exchange("/cache/stats", HttpMethod.GET, null,
+                new ParameterizedTypeReference<Map<String, CacheStats>>() {
+                }).getBody();
+    }
+
     @Test
     void removeStudent_shouldDeleteStudent() {
 
@@ -156,4 +265,242 @@ class StudentControllerTest {
         assertEquals(1, response.getBody().length);
         assertEquals(22, response.getBody()[0].getAge());
     }
+
+    @Test
+    void getStudents_shouldPageForwardAndBackwardWithCursors() {
+        for (int i = 1; i <= 7; i++) {
+            Student student = new Student();
+            student.setName("Paged " + i);
+            student.setAge(20);
+            restTemplate.postForEntity("/student", student, Student.class);
+        }
+
+        StudentSlice first = restTemplate.getForObject("/student?size=3", StudentSlice.class);
+        assertEquals(List.of("Paged 1", "Paged 2", "Paged 3"), names(first));
+        assertNull(first.previousCursor());
+
+        StudentSlice second = restTemplate.getForObject("/student?size=3&cursor=" + first.nextCursor(), StudentSlice.class);
+        assertEquals(List.of("Paged 4", "Paged 5", "Paged 6"), names(second));
+
+        StudentSlice last = restTemplate.getForObject("/student?size=3&cursor=" + second.nextCursor(), StudentSlice.class);
+        assertEquals(List.of("Paged 7"), names(last));
+        assertNull(last.nextCursor());
+
+        StudentSlice back = restTemplate.getForObject("/student?size=3&cursor=" + last.previousCursor(), StudentSlice.class);
+        assertEquals(names(second), names(back));
+    }
+
+    @Test
+    void getLastFiveStudents_shouldReturnNewestFirst() {
+        for (int i = 1; i <= 6; i++) {
+            Student student = new Student();
+            student.setName("Recent " + i);
+            student.setAge(20);
+            restTemplate.postForEntity("/student", student, Student.class);
+        }
+
+        ResponseEntity<Student[]> response = restTemplate.getForEntity("/student/last-five", Student[].class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(List.of("Recent 6", "Recent 5", "Recent 4", "Recent 3", "Recent 2"),
+                Arrays.stream(response.getBody()).map(Student::getName).toList());
+    }
+
+    @Test
+    void getStudents_shouldRejectMalformedCursor() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/student?cursor=not-a-cursor", String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void searchStudents_shouldRankPrefixMatchesBeforeTypos() {
+        for (String name : List.of("Hermione Granger", "Harry Potter", "Hermes Trismegistus", "Ron Weasley")) {
+            Student student = new Student();
+            student.setName(name);
+            student.setAge(17);
+            restTemplate.postForEntity("/student", student, Student.class);
+        }
+
+        StudentSearchHit[] prefix = restTemplate.getForObject("/student/search?q=HER", StudentSearchHit[].class);
+        assertEquals(List.of("Hermes Trismegistus", "Hermione Granger"),
+                Arrays.stream(prefix).map(StudentSearchHit::name).toList());
+        assertEquals(1.0, prefix[0].score());
+
+        StudentSearchHit[] fuzzy = restTemplate.getForObject("/student/search?q=hary poter&limit=3", StudentSearchHit[].class);
+        assertEquals("Harry Potter", fuzzy[0].name());
+        assertTrue(fuzzy[0].score() < 1.0);
+
+        assertEquals(HttpStatus.BAD_REQUEST,
+                restTemplate.getForEntity("/student/search?q= ", String.class).getStatusCode());
+    }
+
+    @Test
+    void getNamesStartingWithA_shouldReturnUpperCaseNamesInOrder() {
+        for (String name : List.of("alice Brown", "Bob Adams", "Aaron Smith", "andy Green")) {
+            Student student = new Student();
+            student.setName(name);
+            student.setAge(17);
+            restTemplate.postForEntity("/student", student, Student.class);
+        }
+
+        String[] names = restTemplate.getForObject("/student/names-starting-with-a", String[].class);
+
+        assertEquals(List.of("AARON SMITH", "ALICE BROWN", "ANDY GREEN"), Arrays.asList(names));
+    }
+
+    private static List<String> names(StudentSlice slice) {
+        return slice.content().stream().map(StudentDto::name).toList();
+    }
+
+    @Test
+    void upsertStudents_shouldReportOutcomePerRow() {
+        Student existing = new Student();
+        existing.setName("Bulk Existing");
+        existing.setAge(18);
+        Long existingId = restTemplate.postForEntity("/student", existing, Student.class).getBody().getId();
+
+        List<StudentBulkItem> items = List.of(
+                new StudentBulkItem("Bulk New", 17, null),
+                new StudentBulkItem("Bulk Existing", 19, null),
+                new StudentBulkItem("Bulk Too Young", 10, null),
+                new StudentBulkItem("Bulk New", 18, null),
+                new StudentBulkItem("Bulk No Faculty", 18, -1L));
+
+        ResponseEntity<StudentBulkReport> response = restTemplate.postForEntity(
+                "/student/bulk", items, StudentBulkReport.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        StudentBulkReport report = response.getBody();
+        assertEquals(1, report.created());
+        assertEquals(1, report.updated());
+        List<StudentBulkResult.Status> statuses = report.results().stream().map(StudentBulkResult::status).toList();
+        assertEquals(List.of(StudentBulkResult.Status.SKIPPED, StudentBulkResult.Status.UPDATED,
+                StudentBulkResult.Status.REJECTED, StudentBulkResult.Status.CREATED,
+                StudentBulkResult.Status.REJECTED), statuses);
+        assertEquals(existingId, report.results().get(1).id());
+        assertEquals(19, studentRepository.findById(existingId).orElseThrow().getAge());
+        assertEquals(18, studentRepository.findById(report.results().get(3).id()).orElseThrow().getAge());
+    }
+
+    @Test
+    void upsertStudents_shouldReportConcurrentlyInsertedNameAsUpdated() throws Exception {
+        long concurrentId;
+        CompletableFuture<StudentBulkReport> bulk;
+        try (Connection other = dataSource.getConnection()) {
+            other.setAutoCommit(false);
+            try (Statement statement = other.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                         "INSERT INTO student (name, age) VALUES ('Bulk Race', 20) RETURNING id")) {
+                rs.next();
+                concurrentId = rs.getLong(1);
+            }
+            bulk = CompletableFuture.supplyAsync(() -> restTemplate.postForEntity("/student/bulk",
+                    List.of(new StudentBulkItem("Bulk Race", 21, null)), StudentBulkReport.class).getBody());
+            // Вставка пакета ждет незафиксированную строку с тем же именем
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (jdbcTemplate.queryForObject("SELECT count(*) FROM pg_stat_activity " +
+                    "WHERE wait_event_type = 'Lock' AND query LIKE '%INSERT INTO student%'", Integer.class) == 0) {
+                assertTrue(System.currentTimeMillis() < deadline, "Пакетная вставка не дошла до блокировки");
+                Thread.sleep(20);
+            }
+            other.commit();
+        }
+
+        StudentBulkReport report = bulk.get(10, TimeUnit.SECONDS);
+        assertEquals(0, report.created());
+        assertEquals(1, report.updated());
+        assertEquals(StudentBulkResult.Status.UPDATED, report.results().get(0).status());
+        assertEquals(concurrentId, report.results().get(0).id());
+        assertEquals(21, studentRepository.findById(concurrentId).orElseThrow().getAge());
+    }
+
+    @Test
+    void upsertStudents_shouldKeepIdsConsistentWithRegularInserts() {
+        List<StudentBulkItem> items = List.of(new StudentBulkItem("Bulk First", 17, null));
+        Long bulkId = restTemplate.postForEntity("/student/bulk", items, StudentBulkReport.class)
+                .getBody().results().get(0).id();
+
+        Student single = new Student();
+        single.setName("Single After Bulk");
+        single.setAge(17);
+        ResponseEntity<Student> response = restTemplate.postForEntity("/student", single, Student.class);
+
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+        assertNotEquals(bulkId, response.getBody().getId());
+    }
+
+    @Test
+    void importStudents_shouldMergeValidRowsAndReportErrors() {
+        Student existing = new Student();
+        existing.setName("Csv Existing");
+        existing.setAge(18);
+        Long existingId = restTemplate.postForEntity("/student", existing, Student.class).getBody().getId();
+
+        String csv = """
+                name,age,faculty_name,faculty_color
+                Csv New,17,Ravenclaw,Blue
+                Csv Existing,19,Ravenclaw,Blue
+                Csv Young,12,,
+                Csv Bad Age,abc,,
+                Csv Half Faculty,18,Hufflepuff,
+                ,18,,
+                "Csv, Quoted",20,,
+                """;
+        MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("file", new ByteArrayResource(csv.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return "students.csv";
+            }
+        });
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        ResponseEntity<StudentImportReport> response = restTemplate.postForEntity(
+                "/student/import", new HttpEntity<>(body, headers), StudentImportReport.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        StudentImportReport report = response.getBody();
+        assertEquals(7, report.total());
+        assertEquals(2, report.created());
+        assertEquals(1, report.updated());
+        assertEquals(4, report.rejected());
+        assertEquals(1, report.facultiesCreated());
+        assertEquals(List.of(3L, 4L, 5L, 6L), report.errors().stream().map(StudentImportError::row).toList());
+        Student updated = studentRepository.findById(existingId).orElseThrow();
+        assertEquals(19, updated.getAge());
+        assertEquals("Ravenclaw", updated.getFaculty().getName());
+        // Созданные строки берут идентификаторы из одного блока последовательности, а не по блоку на строку
+        Map<String, Long> ids = studentRepository.findAll().stream()
+                .collect(Collectors.toMap(Student::getName, Student::getId));
+        assertEquals(ids.get("Csv New") + 1, ids.get("Csv, Quoted"));
+    }
+
+    @Test
+    void ageHistogram_shouldFollowCreateUpdateDeleteAndBulkWrites() {
+        Student first = new Student();
+        first.setName("Stats One");
+        first.setAge(17);
+        Student created = restTemplate.postForEntity("/student", first, Student.class).getBody();
+        Student second = new Student();
+        second.setName("Stats Two");
+        second.setAge(19);
+        restTemplate.postForEntity("/student", second, Student.class);
+
+        created.setAge(21);
+        restTemplate.put("/student/" + created.getId(), created);
+        restTemplate.postForEntity("/student/bulk", List.of(new StudentBulkItem("Stats Bulk", 19, null)),
+                StudentBulkReport.class);
+
+        StudentAgeStatistics stats = restTemplate.getForObject("/student/age-histogram", StudentAgeStatistics.class);
+        assertEquals(3, stats.count());
+        assertEquals(19, stats.minAge());
+        assertEquals(21, stats.maxAge());
+        assertEquals(2L, stats.histogram().get(19));
+        assertEquals(3, restTemplate.getForObject("/student/count", Integer.class));
+
+        restTemplate.delete("/student/" + created.getId());
+        assertEquals(19.0, restTemplate.getForObject("/student/average-age", Double.class));
+    }
 }
@@ -5,15 +5,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.hogwarts.school.controller.StudentController;
-import ru.hogwarts.school.entities.Faculty;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.dto.StudentSearchHit;
+import ru.hogwarts.school.dto.StudentSlice;
 import ru.hogwarts.school.entities.Student;
+import ru.hogwarts.school.service.StudentBulkService;
+import ru.hogwarts.school.service.StudentImportService;
+import ru.hogwarts.school.service.StudentSearchService;
 import ru.hogwarts.school.service.StudentService;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -32,12 +40,18 @@ class StudentControllerWebMvcTest {
     @MockBean
     private StudentService studentService;
 
+    @MockBean
+    private StudentBulkService studentBulkService;
+
+    @MockBean
+    private StudentImportService studentImportService;
+
+    @MockBean
+    private StudentSearchService studentSearchService;
+
     @Test
     void getStudent_shouldReturnStudentWhenExists() throws Exception {
-        Student student = new Student();
-        student.setId(1L);
-        student.setName("Harry Potter");
-        student.setAge(17);
+        StudentDto student = new StudentDto(1L, "Harry Potter", 17, null);
 
         when(studentService.getStudent(1L)).thenReturn(student);
 
@@ -54,10 +68,7 @@ class StudentControllerWebMvcTest {
         newStudent.setName("Hermione Granger");
         newStudent.setAge(17);
 
-        Student createdStudent = new Student();
-        createdStudent.setId(2L);
-        createdStudent.setName("Hermione Granger");
-        createdStudent.setAge(17);
+        StudentDto createdStudent = new StudentDto(2L, "Hermione Granger", 17, null);
 
         when(studentService.addStudent(any(Student.class))).thenReturn(createdStudent);
 
@@ -77,7 +88,7 @@ class StudentControllerWebMvcTest {
         updatedStudent.setName("Harry Potter Updated");
         updatedStudent.setAge(18);
 
-        when(studentService.updateStudent(eq(1L), any(Student.class))).thenReturn(updatedStudent);
+        when(studentService.updateStudent(eq(1L), any(Student.class))).thenReturn(StudentDto.from(updatedStudent));
 
         mockMvc.perform(put("/student/1")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -104,10 +115,7 @@ class StudentControllerWebMvcTest {
 
     @Test
     void getStudentFaculty_shouldReturnFacultyWhenExists() throws Exception {
-        Faculty faculty = new Faculty();
-        faculty.setId(1L);
-        faculty.setName("Gryffindor");
-        faculty.setColor("Red");
+        FacultyDto faculty = new FacultyDto(1L, "Gryffindor", "Red");
 
         when(studentService.getStudentFaculty(1L)).thenReturn(faculty);
 
@@ -120,15 +128,8 @@ class StudentControllerWebMvcTest {
 
     @Test
     void findStudentsByAge_shouldReturnStudents() throws Exception {
-        Student student1 = new Student();
-        student1.setId(1L);
-        student1.setName("Harry Potter");
-        student1.setAge(17);
-
-        Student student2 = new Student();
-        student2.setId(2L);
-        student2.setName("Ron Weasley");
-        student2.setAge(17);
+        StudentDto student1 = new StudentDto(1L, "Harry Potter", 17, null);
+        StudentDto student2 = new StudentDto(2L, "Ron Weasley", 17, null);
 
         when(studentService.findStudentsByAge(17)).thenReturn(Arrays.asList(student1, student2));
 
@@ -142,10 +143,7 @@ class StudentControllerWebMvcTest {
 
     @Test
     void findStudentsByAgeBetween_shouldReturnStudentsInRange() throws Exception {
-        Student student = new Student();
-        student.setId(3L);
-        student.setName("Neville Longbottom");
-        student.setAge(16);
+        StudentDto student = new StudentDto(3L, "Neville Longbottom", 16, null);
 
         when(studentService.findStudentsByAgeBetween(15, 17)).thenReturn(Collections.singletonList(student));
 
@@ -155,4 +153,36 @@ class StudentControllerWebMvcTest {
                 .andExpect(jsonPath("$[0].name").value("Neville Longbottom"))
                 .andExpect(jsonPath("$[0].age").value(16));
     }
-}
\ No newline at end of file
+
+    @Test
+    void getStudents_shouldReturnSliceWithCursors() throws Exception {
+        StudentDto student = new StudentDto(3L, "Ron Weasley", 17, null);
+
+        when(studentService.getStudents(null, 1, Sort.Direction.DESC))
+                .thenReturn(new StudentSlice(List.of(student), "next-token", null));
+
+        mockMvc.perform(get("/student").param("size", "1").param("order", "desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].name").value("Ron Weasley"))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"))
+                .andExpect(jsonPath("$.previousCursor").doesNotExist());
+    }
+
+    @Test
+    void getStudents_shouldRejectUnknownOrder() throws Exception {
+        mockMvc.perform(get("/student").param("order", "sideways"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchStudents_shouldReturnRankedHits() throws Exception {
+        when(studentSearchService.search("her", 5))
+                .thenReturn(List.of(new StudentSearchHit(2L, "Hermione Granger", 17, 1.0)));
+
+        mockMvc.perform(get("/student/search").param("q", "her").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[0].name").value("Hermione Granger"))
+                .andExpect(jsonPath("$[0].score").value(1.0));
+    }
+}
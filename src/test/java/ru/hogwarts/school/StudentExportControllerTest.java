@@ -0,0 +1,90 @@
+package ru.hogwarts.school;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.entities.Faculty;
+import ru.hogwarts.school.entities.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StudentExportControllerTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Faculty faculty;
+
+    @BeforeEach
+    void setUp() {
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+
+        Faculty gryffindor = new Faculty();
+        gryffindor.setName("Gryffindor");
+        gryffindor.setColor("Red");
+        faculty = facultyRepository.save(gryffindor);
+
+        Student harry = new Student();
+        harry.setName("Harry Potter");
+        harry.setAge(17);
+        harry.setFaculty(faculty);
+        studentRepository.save(harry);
+
+        Student luna = new Student();
+        luna.setName("Lovegood, \"Luna\"");
+        luna.setAge(16);
+        studentRepository.save(luna);
+    }
+
+    @Test
+    void exportStudents_shouldStreamNdjsonWithFacultyNames() throws Exception {
+        ResponseEntity<String> response = restTemplate.getForEntity("/student/export", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+        String[] lines = response.getBody().split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("Harry Potter", first.get("name").asText());
+        assertEquals("Gryffindor", first.get("facultyName").asText());
+        JsonNode second = objectMapper.readTree(lines[1]);
+        assertTrue(second.get("facultyId").isNull());
+    }
+
+    @Test
+    void exportStudents_shouldStreamEscapedCsv() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/student/export?format=csv", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String[] lines = response.getBody().split("\r\n");
+        assertEquals("id,name,age,faculty_id,faculty_name", lines[0]);
+        assertTrue(lines[1].endsWith(",Harry Potter,17," + faculty.getId() + ",Gryffindor"));
+        assertTrue(lines[2].endsWith(",\"Lovegood, \"\"Luna\"\"\",16,,"));
+    }
+
+    @Test
+    void exportStudents_shouldRejectUnknownFormat() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/student/export?format=xml", String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+}
@@ -0,0 +1,66 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentAgeStatistics;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.StudentChangedEvent;
+import ru.hogwarts.school.service.StudentChangedEvent.StudentState;
+import ru.hogwarts.school.service.StudentStatistics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StudentStatisticsTest {
+
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final StudentStatistics statistics = new StudentStatistics(studentRepository);
+
+    @Test
+    void onStudentChanged_shouldMaintainCountAverageAndHistogram() {
+        statistics.onStudentChanged(new StudentChangedEvent(1L, null, state(17), 1));
+        statistics.onStudentChanged(new StudentChangedEvent(2L, null, state(19), 2));
+        statistics.onStudentChanged(new StudentChangedEvent(3L, null, state(19), 3));
+        statistics.onStudentChanged(new StudentChangedEvent(1L, state(17), state(18), 4));
+        statistics.onStudentChanged(new StudentChangedEvent(3L, state(19), null, 0));
+
+        StudentAgeStatistics stats = statistics.get();
+        assertEquals(2, stats.count());
+        assertEquals(18.5, stats.averageAge());
+        assertEquals(18, stats.minAge());
+        assertEquals(19, stats.maxAge());
+        assertEquals(new TreeMap<>(Map.of(18, 1L, 19, 1L)), stats.histogram());
+    }
+
+    @Test
+    void reconcile_shouldReplaceStateWithTableAggregate() {
+        statistics.onStudentChanged(new StudentChangedEvent(1L, null, state(30), 5));
+        when(studentRepository.countByAge()).thenReturn(List.of(new AgeCount(16, 2), new AgeCount(20, 1)));
+
+        statistics.reconcile();
+
+        StudentAgeStatistics stats = statistics.get();
+        assertEquals(3, stats.count());
+        assertEquals(52.0 / 3, stats.averageAge(), 1e-9);
+        assertEquals(16, stats.minAge());
+        assertEquals(20, stats.maxAge());
+    }
+
+    @Test
+    void get_shouldReturnZeroAverageWhenEmpty() {
+        StudentAgeStatistics stats = statistics.get();
+
+        assertEquals(0, stats.count());
+        assertEquals(0, stats.averageAge());
+        assertNull(stats.minAge());
+        assertTrue(stats.histogram().isEmpty());
+    }
+
+    private static StudentState state(int age) {
+        return new StudentState("Student", age, null);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hogwarts.school.service.ThumbnailEngine;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThumbnailEngineTest {
+
+    private final ThumbnailEngine thumbnailEngine = new ThumbnailEngine();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void createThumbnail_shouldScaleLargeImageToTargetWidth() throws Exception {
+        Path source = writeImage(1200, 800, "jpg");
+
+        BufferedImage preview = decode(thumbnailEngine.createThumbnail(source, 100));
+
+        assertEquals(100, preview.getWidth());
+        assertEquals(67, preview.getHeight());
+    }
+
+    @Test
+    void createThumbnail_shouldNotUpscaleNarrowImage() throws Exception {
+        Path source = writeImage(40, 30, "png");
+
+        BufferedImage preview = decode(thumbnailEngine.createThumbnail(source, 100));
+
+        assertEquals(40, preview.getWidth());
+        assertEquals(30, preview.getHeight());
+    }
+
+    @Test
+    void createThumbnail_shouldCropExtremelyTallImage() throws Exception {
+        Path source = writeImage(100, 2000, "png");
+
+        BufferedImage preview = decode(thumbnailEngine.createThumbnail(source, 50));
+
+        assertEquals(50, preview.getWidth());
+        assertEquals(200, preview.getHeight());
+    }
+
+    @Test
+    void createThumbnail_shouldRejectNonImage() throws Exception {
+        Path source = tempDir.resolve("broken.png");
+        Files.writeString(source, "not an image");
+
+        assertThrows(IllegalArgumentException.class, () -> thumbnailEngine.createThumbnail(source, 100));
+    }
+
+    private Path writeImage(int width, int height, String format) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            image.setRGB(x, x * height / width, 0xFF8800);
+        }
+        Path file = tempDir.resolve("source." + format);
+        ImageIO.write(image, format, file.toFile());
+        return file;
+    }
+
+    private static BufferedImage decode(byte[] data) throws Exception {
+        return ImageIO.read(new ByteArrayInputStream(data));
+    }
+}